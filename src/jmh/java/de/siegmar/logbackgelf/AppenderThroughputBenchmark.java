@@ -0,0 +1,191 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * Throughput of {@link GelfHttpAppender} compared to {@link GelfTcpAppender}, both sending to
+ * a local stub server that discards all messages.
+ * <p>
+ * Run with different thread counts, e.g.:
+ * {@code ./gradlew jmh -PjmhArgs="AppenderThroughputBenchmark -t 4"}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings("checkstyle:classdataabstractioncoupling")
+public class AppenderThroughputBenchmark {
+
+    @Param({"tcp", "http", "http-uncompressed"})
+    private String transport;
+
+    private LoggerContext context;
+    private ExecutorService executor;
+    private ServerSocket tcpServer;
+    private HttpServer httpServer;
+    private AbstractGelfAppender appender;
+    private LoggingEvent event;
+
+    @Setup
+    public void setup() throws IOException {
+        context = new LoggerContext();
+        executor = Executors.newCachedThreadPool();
+
+        final GelfLayout layout = new GelfLayout();
+        layout.setContext(context);
+        layout.setOriginHost("localhost");
+        layout.start();
+
+        if ("tcp".equals(transport)) {
+            appender = tcpAppender(startTcpServer());
+        } else {
+            appender = httpAppender(startHttpServer(), !transport.endsWith("uncompressed"));
+        }
+
+        appender.setContext(context);
+        appender.setLayout(layout);
+        appender.setGraylogHost("localhost");
+        appender.start();
+
+        event = new LoggingEvent(AppenderThroughputBenchmark.class.getName(),
+            context.getLogger(AppenderThroughputBenchmark.class), Level.INFO,
+            "Benchmark message with some payload to make it look like a real log message",
+            null, null);
+    }
+
+    private static GelfTcpAppender tcpAppender(final int port) {
+        final GelfTcpAppender tcpAppender = new GelfTcpAppender();
+        tcpAppender.setGraylogPort(port);
+        tcpAppender.setPoolSize(4);
+        return tcpAppender;
+    }
+
+    private static GelfHttpAppender httpAppender(final int port, final boolean compression) {
+        final GelfHttpAppender httpAppender = new GelfHttpAppender();
+        httpAppender.setGraylogPort(port);
+        httpAppender.setMaxInFlight(4);
+        httpAppender.setUseCompression(compression);
+        return httpAppender;
+    }
+
+    private int startTcpServer() throws IOException {
+        tcpServer = new ServerSocket(0);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (!tcpServer.isClosed()) {
+                    try {
+                        discard(tcpServer.accept());
+                    } catch (final IOException e) {
+                        // closed
+                    }
+                }
+            }
+        });
+        return tcpServer.getLocalPort();
+    }
+
+    private void discard(final Socket socket) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final byte[] buffer = new byte[8192];
+                try (InputStream in = socket.getInputStream()) {
+                    while (in.read(buffer) != -1) {
+                        // discard
+                    }
+                } catch (final IOException e) {
+                    // closed
+                }
+            }
+        });
+    }
+
+    private int startHttpServer() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(0), 0);
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/gelf", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                final byte[] buffer = new byte[8192];
+                try (InputStream in = exchange.getRequestBody()) {
+                    while (in.read(buffer) != -1) {
+                        // discard
+                    }
+                }
+                exchange.sendResponseHeaders(202, -1);
+                exchange.close();
+            }
+        });
+        httpServer.start();
+        return httpServer.getAddress().getPort();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        appender.stop();
+        if (tcpServer != null) {
+            tcpServer.close();
+        }
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+        executor.shutdownNow();
+        context.stop();
+    }
+
+    @Benchmark
+    public void append() {
+        appender.doAppend(event);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * Throughput of a single logging thread encoding and compressing events with large stack
+ * traces - on the logging thread (0 encoder threads) or in parallel on encoder threads.
+ * <p>
+ * Run with: {@code ./gradlew jmh -PjmhArgs="EncodingBenchmark"}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncodingBenchmark {
+
+    private static final int STACK_DEPTH = 100;
+
+    @Param({"0", "1", "2", "4"})
+    private int encoderThreads;
+
+    private LoggerContext context;
+    private DiscardingAppender appender;
+    private LoggingEvent event;
+
+    @Setup
+    public void setup() {
+        context = new LoggerContext();
+
+        final GelfLayout layout = new GelfLayout();
+        layout.setContext(context);
+        layout.setOriginHost("localhost");
+        layout.start();
+
+        appender = new DiscardingAppender();
+        appender.setContext(context);
+        appender.setLayout(layout);
+        appender.setGraylogHost("localhost");
+        appender.setEncoderThreads(encoderThreads);
+        appender.start();
+
+        event = new LoggingEvent(EncodingBenchmark.class.getName(),
+            context.getLogger(EncodingBenchmark.class), Level.ERROR, "Benchmark message",
+            deepException(STACK_DEPTH), null);
+    }
+
+    private static Exception deepException(final int depth) {
+        return depth == 0 ? new IllegalStateException("Benchmark exception")
+            : deepException(depth - 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        appender.stop();
+        context.stop();
+    }
+
+    @Benchmark
+    public void append() {
+        appender.doAppend(event);
+    }
+
+    /**
+     * Compresses messages (like any UDP appender), but doesn't send them.
+     */
+    private static final class DiscardingAppender extends GelfUdpAppender {
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        @Override
+        protected void appendMessage(final byte[] messageToSend) {
+            bytes.addAndGet(messageToSend.length);
+        }
+
+    }
+
+}
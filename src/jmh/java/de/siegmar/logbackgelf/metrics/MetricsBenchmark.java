@@ -0,0 +1,97 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of concurrent counter updates (as done per logged event) - striped counters
+ * compared to a single shared atomic counter and to disabled metrics - and of latency recording.
+ * Recording must not allocate (verify with {@code -prof gc}).
+ * <p>
+ * Run with: {@code ./gradlew jmh -PjmhArgs="MetricsBenchmark"}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private final AtomicLong atomicEvents = new AtomicLong();
+    private final AtomicLong atomicBytes = new AtomicLong();
+
+    private GelfAppenderMetrics metrics;
+    private GelfAppenderMetrics disabledMetrics;
+    private LatencyHistogram histogram;
+
+    @Setup
+    public void setup() {
+        metrics = new GelfAppenderMetrics();
+        disabledMetrics = new GelfAppenderMetrics();
+        disabledMetrics.setEnabled(false);
+        histogram = new LatencyHistogram();
+    }
+
+    @Benchmark
+    public void striped() {
+        metrics.event();
+        metrics.encoded(1000, 200);
+    }
+
+    @Benchmark
+    public void atomic() {
+        atomicEvents.incrementAndGet();
+        atomicBytes.addAndGet(1000);
+        atomicBytes.addAndGet(200);
+    }
+
+    @Benchmark
+    public void latency() {
+        metrics.layoutTime(metrics.startTime());
+    }
+
+    @Benchmark
+    public void histogram() {
+        histogram.record(12_345);
+    }
+
+    @Benchmark
+    public void disabled() {
+        disabledMetrics.event();
+        disabledMetrics.encoded(1000, 200);
+    }
+
+}
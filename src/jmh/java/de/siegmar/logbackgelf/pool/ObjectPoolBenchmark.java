@@ -0,0 +1,125 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.pool;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Contention benchmark of {@link SimpleObjectPool} compared to a pool based on a single
+ * {@link LinkedBlockingQueue} (the former implementation).
+ * <p>
+ * Run with different thread counts to see the effect of contention, e.g.:
+ * {@code ./gradlew jmh -PjmhArgs="ObjectPoolBenchmark -t 1"} up to
+ * {@code ./gradlew jmh -PjmhArgs="ObjectPoolBenchmark -t 64"}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObjectPoolBenchmark {
+
+    /**
+     * CPU work while holding an object, simulating a (buffered) socket write.
+     */
+    private static final long WORK_TOKENS = 50;
+
+    private static final int MAX_LIFE_TIME = 3600;
+
+    @Param({"simple", "queue"})
+    private String implementation;
+
+    @Param({"2", "8"})
+    private int poolSize;
+
+    private BenchmarkPool pool;
+
+    @Setup
+    public void setup() {
+        final PooledObjectFactory<BenchmarkObject> factory =
+            new PooledObjectFactory<BenchmarkObject>() {
+                @Override
+                public BenchmarkObject newInstance() {
+                    return new BenchmarkObject();
+                }
+            };
+
+        if ("simple".equals(implementation)) {
+            final SimpleObjectPool<BenchmarkObject> simplePool =
+                new SimpleObjectPool<>(factory, poolSize, -1, MAX_LIFE_TIME);
+            pool = new BenchmarkPool() {
+                @Override
+                public void use() throws InterruptedException {
+                    final BenchmarkObject o = simplePool.borrowObject();
+                    Blackhole.consumeCPU(WORK_TOKENS);
+                    simplePool.returnObject(o);
+                }
+            };
+        } else {
+            // Former implementation: a single queue, lifetime check on every borrow
+            final BlockingQueue<BenchmarkObject> queue = new LinkedBlockingQueue<>();
+            for (int i = 0; i < poolSize; i++) {
+                queue.add(factory.newInstance());
+            }
+            pool = new BenchmarkPool() {
+                @Override
+                public void use() throws InterruptedException {
+                    final BenchmarkObject o = queue.take();
+                    if (o.lifeTime() > MAX_LIFE_TIME) {
+                        throw new IllegalStateException();
+                    }
+                    Blackhole.consumeCPU(WORK_TOKENS);
+                    queue.add(o);
+                }
+            };
+        }
+    }
+
+    @Benchmark
+    public void borrowAndReturn() throws InterruptedException {
+        pool.use();
+    }
+
+    private interface BenchmarkPool {
+
+        void use() throws InterruptedException;
+
+    }
+
+    private static final class BenchmarkObject extends AbstractPooledObject {
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Encodes (and compresses) events on a pool of worker threads in parallel and delivers the
+ * encoded messages in submission order.
+ * <p>
+ * Every submitted event gets a slot in a queue. Workers fill the slots in any order - the
+ * sequencer delivers completed slots from the head of the queue only. Delivery is done by one
+ * worker at a time (whichever completed the head slot), so the transport sees a single,
+ * ordered stream of messages.
+ */
+abstract class AbstractEncodingPipeline {
+
+    private static final long SHUTDOWN_TIMEOUT = 10_000;
+
+    private final ExecutorService workers;
+    private final Semaphore capacity;
+    private final Queue<Slot> slots = new ConcurrentLinkedQueue<>();
+    private final Lock sequencer = new ReentrantLock();
+
+    /**
+     * @param threads the number of worker threads.
+     * @param queueSize the maximum number of submitted, but not yet delivered events. If
+     *     reached, submitting threads wait.
+     */
+    AbstractEncodingPipeline(final int threads, final int queueSize) {
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "gelf-encoder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        capacity = new Semaphore(queueSize);
+    }
+
+    /**
+     * Encodes the given event. Called concurrently by the worker threads.
+     *
+     * @param event the event to encode.
+     * @return the encoded message or {@code null} if the event couldn't be encoded.
+     */
+    protected abstract byte[] encode(ILoggingEvent event);
+
+    /**
+     * Delivers the given message. Called by one worker thread at a time, in submission order.
+     *
+     * @param event the event the message has been encoded from.
+     * @param message the encoded message.
+     */
+    protected abstract void deliver(ILoggingEvent event, byte[] message);
+
+    /**
+     * Submits the given event. The event has to be prepared for deferred processing.
+     *
+     * @param event the event to encode and deliver.
+     * @throws InterruptedException if interrupted while waiting for queue capacity.
+     * @throws RejectedExecutionException if the pipeline has been closed.
+     */
+    void submit(final ILoggingEvent event) throws InterruptedException {
+        capacity.acquire();
+
+        // The queue order defines the delivery order - not the order the workers complete
+        final Slot slot = new Slot(event);
+        slots.add(slot);
+
+        try {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        slot.message = encode(event);
+                    } finally {
+                        slot.done = true;
+                        deliverCompleted();
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // The slot would never be completed and would block all following slots
+            slots.remove(slot);
+            capacity.release();
+            deliverCompleted();
+            throw e;
+        }
+    }
+
+    private void deliverCompleted() {
+        // Re-check after unlocking - the head may have been completed by another worker that
+        // couldn't get the lock
+        while (isHeadCompleted() && sequencer.tryLock()) {
+            try {
+                while (isHeadCompleted()) {
+                    final Slot slot = slots.poll();
+                    capacity.release();
+                    if (slot.message != null) {
+                        deliver(slot.event, slot.message);
+                    }
+                }
+            } finally {
+                sequencer.unlock();
+            }
+        }
+    }
+
+    private boolean isHeadCompleted() {
+        final Slot head = slots.peek();
+        return head != null && head.done;
+    }
+
+    /**
+     * Waits (for a limited time) until all submitted events are delivered and stops the
+     * worker threads.
+     */
+    void close() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Slot {
+
+        private final ILoggingEvent event;
+        private volatile byte[] message;
+        private volatile boolean done;
+
+        Slot(final ILoggingEvent event) {
+            this.event = event;
+        }
+
+    }
+
+}
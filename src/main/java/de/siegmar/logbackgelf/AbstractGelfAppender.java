@@ -21,13 +21,23 @@ package de.siegmar.logbackgelf;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.management.JMException;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import de.siegmar.logbackgelf.metrics.GelfAppenderMetrics;
 
 public abstract class AbstractGelfAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
 
     private static final int DEFAULT_GELF_PORT = 12201;
+    private static final int DEFAULT_ENCODER_QUEUE_SIZE = 1024;
+    private static final int DEFAULT_ERROR_REPORT_INTERVAL = 10_000;
+    private static final int DEFAULT_DROP_SUMMARY_INTERVAL = 60_000;
+    private static final int DEFAULT_RATE_LIMIT_MAX_KEYS = 10_000;
 
     /**
      * IP or hostname of graylog server.
@@ -39,8 +49,76 @@ public abstract class AbstractGelfAppender extends UnsynchronizedAppenderBase<IL
      */
     private int graylogPort = DEFAULT_GELF_PORT;
 
+    /**
+     * Number of worker threads encoding (and compressing) messages in parallel - the messages
+     * are still sent in the order they have been logged. A value of 0 encodes messages on the
+     * logging thread. Default: 0.
+     */
+    private int encoderThreads;
+
+    /**
+     * Maximum number of logged, but not yet sent messages if encoder threads are used. If
+     * reached, logging threads wait. Default: 1,024.
+     */
+    private int encoderQueueSize = DEFAULT_ENCODER_QUEUE_SIZE;
+
+    /**
+     * If true, the appender counters are registered as MBean
+     * ({@code de.siegmar.logbackgelf:type=GelfAppender}). Default: true.
+     */
+    private boolean metricsEnabled = true;
+
+    /**
+     * Interval (in milliseconds) of error reports. Only the first send error of an interval is
+     * reported with its stack trace - further errors are summarized at the end of the interval.
+     * A value of 0 reports every error. Default: 10,000 milliseconds.
+     */
+    private int errorReportInterval = DEFAULT_ERROR_REPORT_INTERVAL;
+
+    /**
+     * Interval (in milliseconds) of drop summaries. If messages have been dropped within an
+     * interval, a summary message with the number of dropped messages per reason is sent.
+     * A value of 0 disables drop summaries. Default: 60,000 milliseconds.
+     */
+    private int dropSummaryInterval = DEFAULT_DROP_SUMMARY_INTERVAL;
+
+    /**
+     * Maximum number of events per second and logger (or MDC value, see rateLimitMdcKey).
+     * Events over the limit are dropped before the layout is applied. A value of 0 disables
+     * rate limiting. Default: 0.
+     */
+    private int rateLimit;
+
+    /**
+     * Number of events per logger that may be sent at once, before rateLimit applies.
+     * Default: rateLimit (one second worth of events).
+     */
+    private int rateLimitBurst;
+
+    /**
+     * If set, events are rate limited per value of this MDC key instead of per logger. Events
+     * without this MDC key are rate limited per logger. Default: none.
+     */
+    private String rateLimitMdcKey;
+
+    /**
+     * Maximum number of loggers (or MDC values) with their own rate limit. Further loggers
+     * share one limit. Default: 10,000.
+     */
+    private int rateLimitMaxKeys = DEFAULT_RATE_LIMIT_MAX_KEYS;
+
     private GelfLayout layout;
 
+    private final GelfAppenderMetrics metrics = new GelfAppenderMetrics();
+
+    private AbstractEncodingPipeline encodingPipeline;
+
+    private ErrorReporter errorReporter;
+
+    private DropSummary dropSummary;
+
+    private RateLimiter rateLimiter;
+
     public String getGraylogHost() {
         return graylogHost;
     }
@@ -57,6 +135,78 @@ public abstract class AbstractGelfAppender extends UnsynchronizedAppenderBase<IL
         this.graylogPort = graylogPort;
     }
 
+    public int getEncoderThreads() {
+        return encoderThreads;
+    }
+
+    public void setEncoderThreads(final int encoderThreads) {
+        this.encoderThreads = encoderThreads;
+    }
+
+    public int getEncoderQueueSize() {
+        return encoderQueueSize;
+    }
+
+    public void setEncoderQueueSize(final int encoderQueueSize) {
+        this.encoderQueueSize = encoderQueueSize;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(final boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public int getErrorReportInterval() {
+        return errorReportInterval;
+    }
+
+    public void setErrorReportInterval(final int errorReportInterval) {
+        this.errorReportInterval = errorReportInterval;
+    }
+
+    public int getDropSummaryInterval() {
+        return dropSummaryInterval;
+    }
+
+    public void setDropSummaryInterval(final int dropSummaryInterval) {
+        this.dropSummaryInterval = dropSummaryInterval;
+    }
+
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(final int rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public void setRateLimitBurst(final int rateLimitBurst) {
+        this.rateLimitBurst = rateLimitBurst;
+    }
+
+    public String getRateLimitMdcKey() {
+        return rateLimitMdcKey;
+    }
+
+    public void setRateLimitMdcKey(final String rateLimitMdcKey) {
+        this.rateLimitMdcKey = rateLimitMdcKey;
+    }
+
+    public int getRateLimitMaxKeys() {
+        return rateLimitMaxKeys;
+    }
+
+    public void setRateLimitMaxKeys(final int rateLimitMaxKeys) {
+        this.rateLimitMaxKeys = rateLimitMaxKeys;
+    }
+
     public GelfLayout getLayout() {
         return layout;
     }
@@ -68,7 +218,7 @@ public abstract class AbstractGelfAppender extends UnsynchronizedAppenderBase<IL
     @SuppressWarnings("checkstyle:illegalcatch")
     @Override
     public final void start() {
-        if (graylogHost == null) {
+        if (graylogHost == null && isGraylogHostRequired()) {
             addError("No graylogHost configured");
             return;
         }
@@ -84,42 +234,292 @@ public abstract class AbstractGelfAppender extends UnsynchronizedAppenderBase<IL
             return;
         }
 
+        metrics.setEnabled(metricsEnabled);
+        errorReporter = ErrorReporter.schedule(this, getContext().getScheduledExecutorService(),
+            errorReportInterval);
+        dropSummary = DropSummary.schedule(this, getContext().getScheduledExecutorService(),
+            dropSummaryInterval);
+        rateLimiter = rateLimit > 0 ? new RateLimiter(rateLimit,
+            rateLimitBurst > 0 ? rateLimitBurst : rateLimit, rateLimitMaxKeys) : null;
+
         try {
             startAppender();
 
+            if (encoderThreads > 0) {
+                encodingPipeline = initEncodingPipeline();
+            }
+
             super.start();
         } catch (final Exception e) {
             addError("Couldn't start appender", e);
+            closeReporters();
+            return;
+        }
+
+        if (metricsEnabled) {
+            registerMetrics();
+        }
+    }
+
+    private void registerMetrics() {
+        try {
+            metrics.register(String.valueOf(getContext().getName()),
+                String.valueOf(getName()));
+        } catch (final JMException e) {
+            addWarn("Couldn't register metrics MBean", e);
         }
     }
 
     protected void startAppender() throws IOException {
     }
 
-    @SuppressWarnings("checkstyle:illegalcatch")
+    /**
+     * Returns the counters of this appender. If metrics are disabled, they aren't updated.
+     *
+     * @return the metrics of this appender.
+     */
+    protected GelfAppenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    private AbstractEncodingPipeline initEncodingPipeline() {
+        return new AbstractEncodingPipeline(encoderThreads, encoderQueueSize) {
+            @SuppressWarnings("checkstyle:illegalcatch")
+            @Override
+            protected byte[] encode(final ILoggingEvent event) {
+                try {
+                    return AbstractGelfAppender.this.encode(event);
+                } catch (final Exception e) {
+                    addError("Error encoding GELF message", e);
+                    messageDropped(DropReason.ENCODING_FAILURE);
+                    return null;
+                }
+            }
+
+            @Override
+            protected void deliver(final ILoggingEvent event, final byte[] message) {
+                send(event, message);
+            }
+        };
+    }
+
     @Override
     protected void append(final ILoggingEvent event) {
-        final String message = layout.doLayout(event);
-        final byte[] binMessage = message.getBytes(StandardCharsets.UTF_8);
+        metrics.event();
+
+        if (rateLimiter != null && !rateLimiter.tryAcquire(rateLimitKey(event))) {
+            // Dropped before the (expensive) layout
+            messageDropped(DropReason.RATE_LIMITED);
+            return;
+        }
+
+        if (encodingPipeline == null) {
+            send(event, encode(event));
+            return;
+        }
+
+        // Event is processed by another thread
+        event.prepareForDeferredProcessing();
+        if (layout.isIncludeCallerData()) {
+            event.getCallerData();
+        }
+
+        try {
+            encodingPipeline.submit(event);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            addError("Interrupted while waiting for the encoder queue - message dropped", e);
+            messageDropped(DropReason.QUEUE_OVERFLOW);
+        } catch (final RejectedExecutionException e) {
+            addError("Encoder has been stopped - message dropped", e);
+            messageDropped(DropReason.QUEUE_OVERFLOW);
+        }
+    }
+
+    private String rateLimitKey(final ILoggingEvent event) {
+        if (rateLimitMdcKey != null) {
+            final String mdcValue = event.getMDCPropertyMap().get(rateLimitMdcKey);
+            if (mdcValue != null) {
+                return mdcValue;
+            }
+        }
 
+        return event.getLoggerName();
+    }
+
+    private byte[] encode(final ILoggingEvent event) {
+        return encode(event, Collections.<String, Object>emptyMap());
+    }
+
+    private byte[] encode(final ILoggingEvent event, final Map<String, Object> fields) {
+        final long layoutStart = metrics.startTime();
+        final byte[] binMessage =
+            layout.doLayout(event, fields).getBytes(StandardCharsets.UTF_8);
+        metrics.layoutTime(layoutStart);
+
+        final long compressionStart = metrics.startTime();
+        final byte[] encodedMessage = encodeMessage(binMessage);
+        metrics.compressionTime(compressionStart);
+
+        metrics.encoded(binMessage.length, encodedMessage.length);
+        return encodedMessage;
+    }
+
+    @SuppressWarnings("checkstyle:illegalcatch")
+    private void send(final ILoggingEvent event, final byte[] messageToSend) {
+        final long sendStart = metrics.startTime();
         try {
-            appendMessage(binMessage);
+            appendMessage(event, messageToSend);
         } catch (final Exception e) {
             // Could be IOException or some kind of RuntimeException
-            addError("Error sending GELF message", e);
+            metrics.sendError();
+            messageDropped(e instanceof MessageTooLargeException
+                ? DropReason.MESSAGE_TOO_LARGE : DropReason.SEND_FAILURE);
+            reportSendError("Error sending GELF message", e);
+        } finally {
+            metrics.sendTime(sendStart);
+        }
+    }
+
+    /**
+     * Reports an error that occurred while sending a message. Errors are aggregated per
+     * {@code errorReportInterval} - so don't format the message for every error.
+     *
+     * @param message the error message.
+     * @param error the cause or {@code null}.
+     */
+    protected void reportSendError(final String message, final Throwable error) {
+        final ErrorReporter reporter = errorReporter;
+        if (reporter != null) {
+            reporter.report(message, error);
+        } else {
+            addError(message, error);
+        }
+    }
+
+    /**
+     * Counts a dropped message - for the metrics and the drop summary.
+     *
+     * @param reason the reason why the message has been dropped.
+     */
+    protected void messageDropped(final DropReason reason) {
+        metrics.dropped();
+
+        final DropSummary summary = dropSummary;
+        if (summary != null) {
+            summary.dropped(reason);
         }
     }
 
+    /**
+     * Sends the given drop summary event - bypassing the encoder queue.
+     *
+     * @param fields the counts of the summary - included regardless of the layout
+     *     configuration.
+     * @return {@code true} if the summary has been sent.
+     */
+    @SuppressWarnings("checkstyle:illegalcatch")
+    boolean sendDropSummary(final ILoggingEvent event, final Map<String, Object> fields) {
+        try {
+            return appendPriorityMessage(encode(event, fields));
+        } catch (final Exception e) {
+            reportSendError("Error sending drop summary", e);
+            return false;
+        }
+    }
+
+    /**
+     * Sends a message that must not be dropped under load (e.g. a drop summary). Appenders
+     * with queues or load shedding should send it directly. Failures are not counted as drops.
+     *
+     * @param messageToSend the GELF message, encoded by {@link #encodeMessage(byte[])}.
+     * @return {@code true} if the message has been sent, {@code false} if it couldn't be sent
+     *     (e.g. while the server is unreachable).
+     * @throws IOException if the message couldn't be sent.
+     */
+    protected boolean appendPriorityMessage(final byte[] messageToSend) throws IOException {
+        appendMessage(null, messageToSend);
+        return true;
+    }
+
+    /**
+     * Encodes the given GELF message for the transport (e.g. compresses it). Called by the
+     * encoder threads, if configured.
+     *
+     * @param binMessage the GELF message.
+     * @return the message to send.
+     */
+    protected byte[] encodeMessage(final byte[] binMessage) {
+        return binMessage;
+    }
+
+    /**
+     * Checks if this appender sends to the configured {@code graylogHost} - which is then
+     * required to start the appender.
+     *
+     * @return {@code true} if a graylogHost is required.
+     */
+    protected boolean isGraylogHostRequired() {
+        return true;
+    }
+
+    /**
+     * Identifies the transformation of {@link #encodeMessage(byte[])}. Appenders with the same
+     * message encoding produce the same encoded message.
+     *
+     * @return the message encoding, e.g. {@code identity} or {@code gzip}.
+     */
+    protected String messageEncoding() {
+        return "identity";
+    }
+
+    /**
+     * Sends the given message. Override to access the event the message has been created from.
+     *
+     * @param event the logging event or {@code null} if not available.
+     * @param messageToSend the GELF message, encoded by {@link #encodeMessage(byte[])}.
+     * @throws IOException if the message couldn't be sent.
+     */
+    protected void appendMessage(final ILoggingEvent event, final byte[] messageToSend)
+        throws IOException {
+
+        appendMessage(messageToSend);
+    }
+
     protected abstract void appendMessage(byte[] messageToSend) throws IOException;
 
     @Override
     public void stop() {
         super.stop();
+
+        if (encodingPipeline != null) {
+            // Send the pending messages before the transport is closed
+            encodingPipeline.close();
+            encodingPipeline = null;
+        }
+
+        // Sends the summary of the last (incomplete) interval - before the transport is closed
+        closeReporters();
+
         try {
             close();
         } catch (final IOException e) {
             addError("Couldn't close appender", e);
         }
+
+        metrics.unregister();
+    }
+
+    private void closeReporters() {
+        if (dropSummary != null) {
+            dropSummary.close();
+            dropSummary = null;
+        }
+
+        if (errorReporter != null) {
+            errorReporter.close();
+            errorReporter = null;
+        }
     }
 
     protected abstract void close() throws IOException;
@@ -0,0 +1,389 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.List;
+
+import de.siegmar.logbackgelf.jfr.ConnectEvent;
+import de.siegmar.logbackgelf.jfr.TcpWriteEvent;
+import de.siegmar.logbackgelf.metrics.GelfAppenderMetrics;
+import de.siegmar.logbackgelf.pool.AbstractPooledObject;
+import de.siegmar.logbackgelf.pool.PooledObjectConsumer;
+import de.siegmar.logbackgelf.pool.PooledObjectFactory;
+import de.siegmar.logbackgelf.pool.SimpleObjectPool;
+
+/**
+ * Base class of pooled connections to a Graylog server. Takes care of (lazy or background)
+ * connects and reports the health of the connected address to the {@link AddressResolver}.
+ */
+public abstract class AbstractTcpConnection extends AbstractPooledObject {
+
+    private final AddressResolver addressResolver;
+    private final int port;
+    private final int connectTimeout;
+
+    private long connectAttemptDelay;
+
+    private GelfAppenderMetrics metrics;
+
+    private volatile InetAddress address;
+
+    private volatile boolean closed;
+
+    /** Start (or last progress) of the current write, {@code 0} if no write is in progress. */
+    private volatile long writeProgress;
+
+    private volatile boolean writeAborted;
+
+    AbstractTcpConnection(final AddressResolver addressResolver, final int port,
+                          final int connectTimeout) {
+        this.addressResolver = addressResolver;
+        this.port = port;
+        this.connectTimeout = connectTimeout;
+    }
+
+    protected int getPort() {
+        return port;
+    }
+
+    protected int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the delay (in milliseconds) between staggered connection attempts to the addresses
+     * of the hostname. A value of 0 disables staggered connection attempts.
+     */
+    void setConnectAttemptDelay(final long connectAttemptDelay) {
+        this.connectAttemptDelay = connectAttemptDelay;
+    }
+
+    /**
+     * Wraps the given factory to count the (re)connects of all created connections.
+     *
+     * @param factory the connection factory.
+     * @param metrics the metrics to count the connects in.
+     * @return the wrapped factory.
+     */
+    static PooledObjectFactory<AbstractTcpConnection> countConnects(
+        final PooledObjectFactory<AbstractTcpConnection> factory,
+        final GelfAppenderMetrics metrics) {
+
+        return new PooledObjectFactory<AbstractTcpConnection>() {
+            @Override
+            public AbstractTcpConnection newInstance() {
+                final AbstractTcpConnection connection = factory.newInstance();
+                connection.metrics = metrics;
+                return connection;
+            }
+        };
+    }
+
+    protected boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    protected void open() throws IOException {
+        ensureConnected();
+    }
+
+    /**
+     * Writes the given message with a connection borrowed from the given pool.
+     *
+     * @param pool the pool to borrow the connection from.
+     * @param messageToSend the message to write.
+     * @return {@code false} if no connection could be borrowed within the pool's wait time.
+     * @throws Exception if the write failed.
+     */
+    static boolean write(final SimpleObjectPool<AbstractTcpConnection> pool,
+                         final byte[] messageToSend) throws Exception {
+
+        return pool.tryExecute(new PooledObjectConsumer<AbstractTcpConnection>() {
+            @Override
+            public void accept(final AbstractTcpConnection tcpConnection) throws IOException {
+                tcpConnection.write(messageToSend);
+            }
+        });
+    }
+
+    public void write(final byte[] messageToSend) throws IOException {
+        ensureConnected();
+
+        final TcpWriteEvent writeEvent = new TcpWriteEvent();
+        writeEvent.begin();
+
+        final long start = writeStarted();
+        boolean success = false;
+        try {
+            writeMessage(messageToSend);
+            success = true;
+        } catch (final IOException e) {
+            throw translateAbort(e);
+        } finally {
+            writeCompleted(start, success);
+            commit(writeEvent, messageToSend.length, success);
+        }
+    }
+
+    /**
+     * Transfers a region of the given file channel (containing complete GELF frames) in bulk.
+     *
+     * @param channel the channel to read from.
+     * @param position the position within the channel to start at.
+     * @param count the number of bytes to transfer.
+     * @throws IOException if the data couldn't be transferred.
+     */
+    public void write(final FileChannel channel, final long position, final long count)
+        throws IOException {
+
+        ensureConnected();
+
+        final TcpWriteEvent writeEvent = new TcpWriteEvent();
+        writeEvent.begin();
+
+        final long start = writeStarted();
+        boolean success = false;
+        try {
+            transfer(channel, position, count);
+            success = true;
+        } catch (final IOException e) {
+            throw translateAbort(e);
+        } finally {
+            writeCompleted(start, success);
+            commit(writeEvent, count, success);
+        }
+    }
+
+    private void commit(final TcpWriteEvent writeEvent, final long bytes, final boolean success) {
+        if (!writeEvent.shouldCommit()) {
+            return;
+        }
+
+        final InetAddress ip = address;
+        writeEvent.setAddress(ip != null ? ip.getHostAddress() : null);
+        writeEvent.setBytes(bytes);
+        writeEvent.setSuccess(success);
+        writeEvent.commit();
+    }
+
+    private void commit(final ConnectEvent connectEvent, final InetAddress ip,
+                        final boolean success) {
+        if (connectEvent.shouldCommit()) {
+            connectEvent.setPort(port);
+            connectEvent.setAddress(ip != null ? ip.getHostAddress() : null);
+            connectEvent.setSuccess(success);
+            connectEvent.commit();
+        }
+    }
+
+    private long writeStarted() {
+        final InetAddress ip = address;
+        if (ip != null) {
+            addressResolver.writeStarted(ip);
+        }
+        final long start = System.nanoTime();
+        writeProgress = start;
+        return start;
+    }
+
+    /**
+     * Reports the progress of a long running write (e.g. of a bulk transfer) - which restarts
+     * the write timeout.
+     */
+    protected void writeProgressed() {
+        writeProgress = System.nanoTime();
+    }
+
+    private void writeCompleted(final long start, final boolean success) {
+        writeProgress = 0;
+        final InetAddress ip = address;
+        if (ip != null) {
+            addressResolver.writeCompleted(ip, System.nanoTime() - start, success);
+        }
+    }
+
+    private IOException translateAbort(final IOException e) {
+        if (!writeAborted) {
+            return e;
+        }
+
+        final SocketTimeoutException timeoutException =
+            new SocketTimeoutException("Write timed out - connection aborted");
+        timeoutException.initCause(e);
+        return timeoutException;
+    }
+
+    /**
+     * Checks if the current write made no progress within the given timeout.
+     *
+     * @param now the current {@link System#nanoTime()}.
+     * @param timeout the write timeout in nanoseconds.
+     * @return {@code true} if the current write timed out.
+     */
+    boolean isWriteTimedOut(final long now, final long timeout) {
+        final long progress = writeProgress;
+        return progress != 0 && now - progress > timeout;
+    }
+
+    /**
+     * Aborts the current write by closing the connection. The writing thread fails with a
+     * {@link SocketTimeoutException}.
+     */
+    void abortWrite() {
+        writeAborted = true;
+        close();
+    }
+
+    private synchronized void ensureConnected() throws IOException {
+        if (isConnected()) {
+            // Connected concurrently (in background)
+            return;
+        }
+
+        final ConnectEvent connectEvent = new ConnectEvent();
+        connectEvent.begin();
+
+        final InetAddress ip;
+        try {
+            ip = connectCandidates();
+        } catch (final IOException e) {
+            commit(connectEvent, null, false);
+            throw e;
+        }
+
+        if (ip != null) {
+            addressResolver.reportSuccess(ip);
+            address = ip;
+        }
+        commit(connectEvent, ip, true);
+
+        if (metrics != null) {
+            metrics.connected();
+        }
+
+        if (closed) {
+            // Closed while connecting in background
+            disconnect();
+            throw new IOException("Connection closed");
+        }
+    }
+
+    /**
+     * Connects to (one of) the addresses of the Graylog hostname.
+     *
+     * @return the connected address or {@code null} if the connection isn't made to an
+     *     address of the Graylog hostname (and not reported to the {@link AddressResolver}).
+     * @throws IOException if the connection couldn't be established.
+     */
+    InetAddress connectCandidates() throws IOException {
+        final List<InetAddress> candidates = connectAttemptDelay > 0
+            ? addressResolver.resolveAll()
+            : Collections.singletonList(addressResolver.resolve());
+
+        final InetAddress ip;
+        if (candidates.size() == 1) {
+            ip = candidates.get(0);
+            try {
+                connect(ip);
+            } catch (final IOException e) {
+                addressResolver.reportFailure(ip);
+                throw e;
+            }
+        } else {
+            ip = connectStaggered(candidates);
+        }
+
+        return ip;
+    }
+
+    private InetAddress connectStaggered(final List<InetAddress> candidates) throws IOException {
+        final SocketChannel channel = StaggeredConnector.connect(candidates, port,
+            connectAttemptDelay, connectTimeout, addressResolver);
+        final InetAddress ip = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+
+        try {
+            connect(channel);
+        } catch (final IOException e) {
+            addressResolver.reportFailure(ip);
+            throw e;
+        }
+
+        return ip;
+    }
+
+    /**
+     * Checks if a connection has been established.
+     */
+    protected abstract boolean isConnected();
+
+    /**
+     * Establishes the connection to the given address. On failure, all resources have to be
+     * released.
+     *
+     * @param ip the address to connect to.
+     * @throws IOException if the connection couldn't be established.
+     */
+    protected abstract void connect(InetAddress ip) throws IOException;
+
+    /**
+     * Establishes the connection on top of the given, already connected channel (from
+     * staggered connection attempts). The default implementation closes the channel and
+     * connects again via {@link #connect(InetAddress)}.
+     *
+     * @param channel the connected channel (in blocking mode).
+     * @throws IOException if the connection couldn't be established. The channel is closed.
+     */
+    protected void connect(final SocketChannel channel) throws IOException {
+        final InetAddress ip = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+        channel.close();
+        connect(ip);
+    }
+
+    /**
+     * Writes (and flushes) the given message to the established connection.
+     */
+    protected abstract void writeMessage(byte[] messageToSend) throws IOException;
+
+    /**
+     * Writes (and flushes) a region of the given file channel to the established connection.
+     */
+    protected abstract void transfer(FileChannel channel, long position, long count)
+        throws IOException;
+
+    /**
+     * Closes the connection (if established) and releases all resources.
+     */
+    protected abstract void disconnect();
+
+    @Override
+    protected final void close() {
+        closed = true;
+        disconnect();
+    }
+
+}
@@ -19,27 +19,148 @@
 
 package de.siegmar.logbackgelf;
 
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Resolves the Graylog hostname to one of its addresses.
+ * <p>
+ * The health of each address is tracked by the failures and write latencies reported by the
+ * transport. An address failing repeatedly (or writing too slowly) is ejected for a backoff
+ * time, which is doubled with each consecutive ejection. Among the remaining addresses, the
+ * one with the least outstanding writes is selected - ties are resolved round robin.
+ * If all addresses are ejected, the one whose backoff ends first is selected.
+ * <p>
+ * For staggered connection attempts, all addresses are returned - the selected one first,
+ * followed by the others with alternating address families (RFC 8305) and ejected addresses
+ * last.
+ */
 class AddressResolver {
 
+    private static final int FAILURES_TO_EJECT = 2;
+    private static final long DEFAULT_MIN_EJECTION_TIME = 1_000;
+    private static final long DEFAULT_MAX_EJECTION_TIME = 60_000;
+    private static final long DEFAULT_SLOW_WRITE_THRESHOLD = 5_000;
+    private static final int MAX_BACKOFF_SHIFT = 20;
+
     private final String hostname;
     private final AtomicInteger cnt;
+    private final long minEjectionTime;
+    private final long maxEjectionTime;
+    private final long slowWriteThreshold;
+    private final ConcurrentMap<InetAddress, AddressHealth> health = new ConcurrentHashMap<>();
 
     AddressResolver(final String hostname) {
         this(hostname, new AtomicInteger());
     }
 
     AddressResolver(final String hostname, final AtomicInteger cnt) {
+        this(hostname, cnt, DEFAULT_MIN_EJECTION_TIME, DEFAULT_MAX_EJECTION_TIME,
+            DEFAULT_SLOW_WRITE_THRESHOLD);
+    }
+
+    /**
+     * @param hostname the hostname to resolve.
+     * @param cnt the round robin counter.
+     * @param minEjectionTime time (in milliseconds) an address is ejected for the first time.
+     * @param maxEjectionTime maximum time (in milliseconds) an address is ejected.
+     * @param slowWriteThreshold time (in milliseconds) after a write counts as failure.
+     */
+    AddressResolver(final String hostname, final AtomicInteger cnt,
+                    final long minEjectionTime, final long maxEjectionTime,
+                    final long slowWriteThreshold) {
         this.hostname = hostname;
         this.cnt = cnt;
+        this.minEjectionTime = TimeUnit.MILLISECONDS.toNanos(minEjectionTime);
+        this.maxEjectionTime = TimeUnit.MILLISECONDS.toNanos(maxEjectionTime);
+        this.slowWriteThreshold = TimeUnit.MILLISECONDS.toNanos(slowWriteThreshold);
     }
 
     public InetAddress resolve() throws UnknownHostException {
+        return select(lookup());
+    }
+
+    /**
+     * Resolves all addresses of the hostname in the order they should be connected to.
+     *
+     * @return the addresses, the preferred one first.
+     * @throws UnknownHostException if the hostname couldn't be resolved.
+     */
+    List<InetAddress> resolveAll() throws UnknownHostException {
         final InetAddress[] ips = lookup();
-        return ips[modulo(cnt.getAndIncrement(), ips.length)];
+        final InetAddress preferred = select(ips);
+        final long now = System.nanoTime();
+
+        final Deque<InetAddress> ipv6 = new ArrayDeque<>();
+        final Deque<InetAddress> ipv4 = new ArrayDeque<>();
+        final List<InetAddress> ejected = new ArrayList<>();
+        for (final InetAddress ip : ips) {
+            if (ip.equals(preferred)) {
+                continue;
+            }
+
+            final AddressHealth addressHealth = health.get(ip);
+            if (addressHealth != null && addressHealth.isEjected(now)) {
+                ejected.add(ip);
+            } else {
+                (ip instanceof Inet6Address ? ipv6 : ipv4).add(ip);
+            }
+        }
+
+        final List<InetAddress> ordered = new ArrayList<>(ips.length);
+        ordered.add(preferred);
+        boolean lastIpv6 = preferred instanceof Inet6Address;
+        while (!ipv6.isEmpty() || !ipv4.isEmpty()) {
+            final boolean takeIpv4 = lastIpv6 ? !ipv4.isEmpty() : ipv6.isEmpty();
+            ordered.add(takeIpv4 ? ipv4.removeFirst() : ipv6.removeFirst());
+            lastIpv6 = !takeIpv4;
+        }
+        ordered.addAll(ejected);
+
+        return ordered;
+    }
+
+    private InetAddress select(final InetAddress[] ips) {
+        final int offset = modulo(cnt.getAndIncrement(), ips.length);
+        final long now = System.nanoTime();
+
+        InetAddress best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        InetAddress fallback = null;
+        long fallbackEjectedUntil = 0;
+
+        for (int i = 0; i < ips.length; i++) {
+            final InetAddress ip = ips[(offset + i) % ips.length];
+            final AddressHealth addressHealth = health.get(ip);
+
+            if (addressHealth == null) {
+                // Never used before
+                if (bestOutstanding > 0) {
+                    best = ip;
+                    bestOutstanding = 0;
+                }
+            } else if (addressHealth.isEjected(now)) {
+                final long ejectedUntil = addressHealth.getEjectedUntil();
+                if (fallback == null || ejectedUntil - fallbackEjectedUntil < 0) {
+                    fallback = ip;
+                    fallbackEjectedUntil = ejectedUntil;
+                }
+            } else if (addressHealth.getOutstanding() < bestOutstanding) {
+                best = ip;
+                bestOutstanding = addressHealth.getOutstanding();
+            }
+        }
+
+        return best != null ? best : fallback;
     }
 
     InetAddress[] lookup() throws UnknownHostException {
@@ -50,4 +171,99 @@ class AddressResolver {
         return ((value % modulo) + modulo) % modulo;
     }
 
+    private AddressHealth health(final InetAddress address) {
+        final AddressHealth addressHealth = health.get(address);
+        if (addressHealth != null) {
+            return addressHealth;
+        }
+
+        final AddressHealth newHealth = new AddressHealth();
+        final AddressHealth existing = health.putIfAbsent(address, newHealth);
+        return existing != null ? existing : newHealth;
+    }
+
+    /**
+     * Reports a successful operation (e.g. connect) with the given address.
+     */
+    void reportSuccess(final InetAddress address) {
+        health(address).success();
+    }
+
+    /**
+     * Reports a failed operation (e.g. connect or send) with the given address.
+     */
+    void reportFailure(final InetAddress address) {
+        health(address).failure(System.nanoTime());
+    }
+
+    /**
+     * Reports the begin of a write to the given address.
+     */
+    void writeStarted(final InetAddress address) {
+        health(address).outstanding.incrementAndGet();
+    }
+
+    /**
+     * Reports the end of a write to the given address. Writes slower than the configured
+     * threshold count as failure.
+     *
+     * @param address the address written to.
+     * @param duration the duration of the write in nanoseconds.
+     * @param success {@code true} if the write succeeded.
+     */
+    void writeCompleted(final InetAddress address, final long duration, final boolean success) {
+        final AddressHealth addressHealth = health(address);
+        addressHealth.outstanding.decrementAndGet();
+
+        if (success && duration <= slowWriteThreshold) {
+            addressHealth.success();
+        } else {
+            addressHealth.failure(System.nanoTime());
+        }
+    }
+
+    private final class AddressHealth {
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private volatile long ejectedUntil;
+        private volatile boolean ejected;
+        private int failures;
+        private int ejections;
+
+        int getOutstanding() {
+            return outstanding.get();
+        }
+
+        long getEjectedUntil() {
+            return ejectedUntil;
+        }
+
+        boolean isEjected(final long now) {
+            return ejected && ejectedUntil - now > 0;
+        }
+
+        synchronized void success() {
+            failures = 0;
+            ejections = 0;
+            ejected = false;
+        }
+
+        synchronized void failure(final long now) {
+            if (isEjected(now) || ++failures < FAILURES_TO_EJECT) {
+                return;
+            }
+
+            // Back off exponentially as long as the address doesn't recover
+            final long ejectionTime = Math.min(maxEjectionTime,
+                minEjectionTime << Math.min(ejections, MAX_BACKOFF_SHIFT));
+            ejections++;
+            // A single failure after the ejection ends, ejects the address again
+            failures = FAILURES_TO_EJECT - 1;
+            ejectedUntil = now + ejectionTime;
+            ejected = true;
+        }
+
+    }
+
 }
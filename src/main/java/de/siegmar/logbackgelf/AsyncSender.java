@@ -0,0 +1,160 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands sends off to an executor (e.g. of virtual threads), so retries and slow writes don't
+ * block the logging threads. The number of concurrent sends is limited to the number of
+ * connections.
+ * <p>
+ * With a negative handoff timeout, the handoff never blocks (fire-and-forget) - sends beyond
+ * the limit wait on their own thread. Otherwise the logging thread waits (up to the handoff
+ * timeout) for a free slot before handing the send off.
+ * <p>
+ * The number of handed off, but not yet completed sends is limited - so sends (and their
+ * messages) don't pile up while the server is slow or unreachable.
+ */
+final class AsyncSender {
+
+    private static final long SHUTDOWN_TIMEOUT = 5_000;
+
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final long handoffTimeout;
+    private final int maxPending;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * @param executor the executor to run the sends.
+     * @param concurrency the maximum number of concurrent sends.
+     * @param handoffTimeout the maximum time (in milliseconds) to wait for a free slot or -1 to
+     *     never wait.
+     * @param maxPending the maximum number of handed off, but not yet completed sends.
+     */
+    AsyncSender(final ExecutorService executor, final int concurrency,
+                final long handoffTimeout, final int maxPending) {
+        this.executor = executor;
+        this.slots = new Semaphore(concurrency);
+        this.handoffTimeout = handoffTimeout;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Creates a sender executing each send on a new virtual thread.
+     *
+     * @param concurrency the maximum number of concurrent sends.
+     * @param handoffTimeout the maximum time (in milliseconds) to wait for a free slot or -1 to
+     *     never wait.
+     * @param maxPending the maximum number of handed off, but not yet completed sends.
+     * @return the sender.
+     * @throws IllegalStateException if virtual threads are not supported by the runtime.
+     */
+    static AsyncSender virtualThreads(final int concurrency, final long handoffTimeout,
+                                      final int maxPending) {
+        if (!VirtualThreads.isSupported()) {
+            throw new IllegalStateException("Virtual threads require Java 21 or newer");
+        }
+
+        return new AsyncSender(VirtualThreads.newExecutor("gelf-sender-"), concurrency,
+            handoffTimeout, maxPending);
+    }
+
+    /**
+     * Hands the given send off to the executor.
+     *
+     * @param send the send to execute.
+     * @return {@code true} if the send has been handed off, {@code false} if too many sends are
+     *     pending, no slot became free within the handoff timeout or the sender has been closed.
+     */
+    boolean submit(final Runnable send) {
+        final boolean bounded = handoffTimeout >= 0;
+        if (!reserve(bounded)) {
+            return false;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!bounded) {
+                        // Fire-and-forget - wait for a free slot on the sender thread
+                        slots.acquireUninterruptibly();
+                    }
+
+                    try {
+                        send.run();
+                    } finally {
+                        slots.release();
+                        pending.decrementAndGet();
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            if (bounded) {
+                slots.release();
+            }
+            pending.decrementAndGet();
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean reserve(final boolean bounded) {
+        if (pending.incrementAndGet() > maxPending || bounded && !acquireSlot()) {
+            pending.decrementAndGet();
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean acquireSlot() {
+        try {
+            return slots.tryAcquire(handoffTimeout, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Waits (for a limited time) until all handed off sends are completed and stops the
+     * executor.
+     */
+    void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ch.qos.logback.core.spi.ContextAware;
+
+/**
+ * Circuit breaker shared by all threads of an appender.
+ * <p>
+ * After the configured number of consecutive failures, the circuit opens and all requests fail
+ * fast. After a backoff time, a single (half-open) request probes the server. If it succeeds,
+ * the circuit closes again - otherwise it re-opens with a doubled backoff time (with jitter,
+ * limited by the maximum backoff time).
+ * The opening and closing of the circuit is reported once - not for every rejected request.
+ */
+class CircuitBreaker {
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+    private static final int MAX_BACKOFF_SHIFT = 20;
+
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private final ContextAware reporter;
+    private final int failureThreshold;
+    private final long minBackoff;
+    private final long maxBackoff;
+
+    private volatile long openUntil;
+    private int consecutiveOpens;
+
+    /**
+     * @param reporter the component used to report state changes.
+     * @param failureThreshold the number of consecutive failures that open the circuit.
+     *     A value of 0 disables the circuit breaker.
+     * @param minBackoff the time (in milliseconds) the circuit stays open initially.
+     * @param maxBackoff the maximum time (in milliseconds) the circuit stays open.
+     */
+    CircuitBreaker(final ContextAware reporter, final int failureThreshold,
+                   final long minBackoff, final long maxBackoff) {
+        this.reporter = reporter;
+        this.failureThreshold = failureThreshold;
+        this.minBackoff = TimeUnit.MILLISECONDS.toNanos(Math.max(1, minBackoff));
+        this.maxBackoff = TimeUnit.MILLISECONDS.toNanos(Math.max(minBackoff, maxBackoff));
+    }
+
+    /**
+     * Checks if a request may be performed. If the backoff time of an open circuit has elapsed,
+     * this permits a single probe request.
+     *
+     * @return {@code true} if the request may be performed, {@code false} if it has to fail
+     *     fast.
+     */
+    boolean allowRequest() {
+        final int currentState = state.get();
+        if (currentState == CLOSED) {
+            return true;
+        }
+
+        return currentState == OPEN && System.nanoTime() - openUntil >= 0
+            && state.compareAndSet(OPEN, HALF_OPEN);
+    }
+
+    boolean isClosed() {
+        return state.get() == CLOSED;
+    }
+
+    void recordSuccess() {
+        failures.set(0);
+
+        if (state.get() != CLOSED && state.getAndSet(CLOSED) != CLOSED) {
+            synchronized (this) {
+                consecutiveOpens = 0;
+            }
+            reporter.addInfo("Circuit closed - server is reachable again");
+        }
+    }
+
+    /**
+     * Records a request that didn't reach the server (e.g. no connection available due to local
+     * overload). It counts neither as success nor as failure - if it was the probe request of
+     * an open circuit, another probe is permitted.
+     */
+    void recordCancelled() {
+        state.compareAndSet(HALF_OPEN, OPEN);
+    }
+
+    void recordFailure() {
+        if (failureThreshold <= 0) {
+            return;
+        }
+
+        // HALF_OPEN is also used as a lock while the circuit is opened
+        if (state.get() == HALF_OPEN
+            || failures.incrementAndGet() >= failureThreshold
+            && state.compareAndSet(CLOSED, HALF_OPEN)) {
+
+            open();
+        }
+    }
+
+    private synchronized void open() {
+        if (state.get() == OPEN) {
+            // Opened concurrently
+            return;
+        }
+
+        final long backoff = Math.min(maxBackoff,
+            minBackoff << Math.min(consecutiveOpens, MAX_BACKOFF_SHIFT));
+
+        // Equal jitter: half of the backoff fixed, half of it random
+        final long jitteredBackoff =
+            backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+
+        openUntil = System.nanoTime() + jitteredBackoff;
+        state.set(OPEN);
+
+        if (consecutiveOpens++ == 0) {
+            reporter.addWarn(String.format("Circuit opened after %d consecutive failures - "
+                + "failing fast, next attempt in %d ms", failureThreshold,
+                TimeUnit.NANOSECONDS.toMillis(jitteredBackoff)));
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import de.siegmar.logbackgelf.pool.PooledObjectConsumer;
+import de.siegmar.logbackgelf.pool.SimpleObjectPool;
+
+/**
+ * Writes messages by flat combining: every thread publishes its message to a shared queue and
+ * borrows a connection. The thread holding a connection writes all messages published in the
+ * meantime (by itself and by other threads) with a single write. Threads whose message has
+ * been taken by another thread wait until it's written.
+ * <p>
+ * Delivery remains synchronous: {@link #write(byte[])} returns when the message is written,
+ * returns {@code false} if no connection became available and throws the exception of the
+ * failed write otherwise.
+ */
+class CombiningWriter {
+
+    private static final int MAX_BATCH_BYTES = 64 * 1024;
+
+    private final Queue<Frame> queue = new ConcurrentLinkedQueue<>();
+    private final SimpleObjectPool<AbstractTcpConnection> connectionPool;
+
+    CombiningWriter(final SimpleObjectPool<AbstractTcpConnection> connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    @SuppressWarnings("checkstyle:illegalcatch")
+    boolean write(final byte[] message) throws Exception {
+        final Frame frame = new Frame(message);
+        final PooledObjectConsumer<AbstractTcpConnection> combiner =
+            new PooledObjectConsumer<AbstractTcpConnection>() {
+                @Override
+                public void accept(final AbstractTcpConnection connection) throws Exception {
+                    combine(connection, frame);
+                }
+            };
+
+        queue.add(frame);
+
+        while (frame.isPending()) {
+            final boolean borrowed;
+            try {
+                borrowed = connectionPool.tryExecute(combiner);
+            } catch (final Exception e) {
+                // Unless taken by another thread in the meantime, the message must not be
+                // written after the caller has been notified about the failure
+                if (queue.remove(frame)) {
+                    throw e;
+                }
+                continue;
+            }
+
+            if (!borrowed && queue.remove(frame)) {
+                // Pool timeout
+                return false;
+            }
+        }
+
+        frame.await();
+        return true;
+    }
+
+    /**
+     * Writes the published messages until the given frame is taken (by this or another thread)
+     * or the queue is empty.
+     */
+    @SuppressWarnings("checkstyle:illegalcatch")
+    private void combine(final AbstractTcpConnection connection, final Frame own)
+        throws Exception {
+
+        while (own.isPending()) {
+            final List<Frame> batch = takeBatch();
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                connection.write(join(batch));
+            } catch (final Exception e) {
+                // All messages of the batch failed - the connection is invalidated by the pool
+                complete(batch, e);
+                throw e;
+            }
+
+            complete(batch, null);
+        }
+    }
+
+    private List<Frame> takeBatch() {
+        final List<Frame> batch = new ArrayList<>();
+        int bytes = 0;
+
+        while (bytes < MAX_BATCH_BYTES) {
+            final Frame frame = queue.poll();
+            if (frame == null) {
+                break;
+            }
+
+            frame.claim();
+            batch.add(frame);
+            bytes += frame.message.length;
+        }
+
+        return batch;
+    }
+
+    private static byte[] join(final List<Frame> batch) {
+        if (batch.size() == 1) {
+            return batch.get(0).message;
+        }
+
+        int length = 0;
+        for (final Frame frame : batch) {
+            length += frame.message.length;
+        }
+
+        final byte[] buf = new byte[length];
+        int pos = 0;
+        for (final Frame frame : batch) {
+            System.arraycopy(frame.message, 0, buf, pos, frame.message.length);
+            pos += frame.message.length;
+        }
+
+        return buf;
+    }
+
+    private static void complete(final List<Frame> batch, final Exception error) {
+        for (final Frame frame : batch) {
+            frame.complete(error);
+        }
+    }
+
+    private static final class Frame {
+
+        private static final int STATE_PENDING = 0;
+        private static final int STATE_CLAIMED = 1;
+        private static final int STATE_DONE = 2;
+
+        private final byte[] message;
+        private final Thread owner = Thread.currentThread();
+        private volatile int state = STATE_PENDING;
+        private Exception error;
+
+        Frame(final byte[] message) {
+            this.message = message;
+        }
+
+        boolean isPending() {
+            return state == STATE_PENDING;
+        }
+
+        void claim() {
+            state = STATE_CLAIMED;
+        }
+
+        void complete(final Exception writeError) {
+            error = writeError;
+            state = STATE_DONE;
+            LockSupport.unpark(owner);
+        }
+
+        /**
+         * Waits (uninterruptibly) until this frame is written by a combining thread.
+         */
+        void await() throws Exception {
+            boolean interrupted = false;
+            while (state != STATE_DONE) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (error != null) {
+                throw error;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of encoded GELF messages.
+ */
+final class Compression {
+
+    private Compression() {
+    }
+
+    /**
+     * @return the given message, compressed in zlib format.
+     */
+    static byte[] deflate(final byte[] binMessage) {
+        return compress(binMessage, false);
+    }
+
+    /**
+     * @return the given message, compressed in gzip format.
+     */
+    static byte[] gzip(final byte[] binMessage) {
+        return compress(binMessage, true);
+    }
+
+    private static byte[] compress(final byte[] binMessage, final boolean gzip) {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(binMessage.length);
+        try (OutputStream out = gzip ? new GZIPOutputStream(bos) : new DeflaterOutputStream(bos)) {
+            out.write(binMessage);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bos.toByteArray();
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * SSLSocketFactory enabling a configured set of protocols and cipher suites on all sockets
+ * created by the underlying factory.
+ */
+final class ConfiguredSSLSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+    private final String[] protocols;
+    private final String[] cipherSuites;
+
+    /**
+     * @param delegate the factory creating the sockets.
+     * @param protocols the protocols to enable or {@code null} to keep the default.
+     * @param cipherSuites the cipher suites to enable or {@code null} to keep the default.
+     */
+    ConfiguredSSLSocketFactory(final SSLSocketFactory delegate, final String[] protocols,
+                               final String[] cipherSuites) {
+        this.delegate = delegate;
+        this.protocols = protocols == null ? null : protocols.clone();
+        this.cipherSuites = cipherSuites == null ? null : cipherSuites.clone();
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return cipherSuites == null ? delegate.getDefaultCipherSuites() : cipherSuites.clone();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return configure(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(final Socket socket, final String host, final int port,
+                               final boolean autoClose) throws IOException {
+        return configure(delegate.createSocket(socket, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(final String host, final int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(final String host, final int port,
+                               final InetAddress localHost, final int localPort)
+        throws IOException {
+        return configure(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(final InetAddress host, final int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(final InetAddress address, final int port,
+                               final InetAddress localAddress, final int localPort)
+        throws IOException {
+        return configure(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    private Socket configure(final Socket socket) {
+        final SSLSocket sslSocket = (SSLSocket) socket;
+
+        if (protocols != null) {
+            sslSocket.setEnabledProtocols(protocols);
+        }
+
+        if (cipherSuites != null) {
+            sslSocket.setEnabledCipherSuites(cipherSuites);
+        }
+
+        return sslSocket;
+    }
+
+}
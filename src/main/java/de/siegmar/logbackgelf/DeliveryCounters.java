@@ -0,0 +1,60 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts where the messages of an appender went.
+ */
+final class DeliveryCounters {
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong spooled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    void sent() {
+        sent.incrementAndGet();
+    }
+
+    void spooled() {
+        spooled.incrementAndGet();
+    }
+
+    void dropped() {
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of messages per transport: sent via tcp, spooled, taken by each
+     * fallback appender (by name) and dropped.
+     */
+    Map<String, Long> snapshot(final FallbackChain fallbackChain) {
+        final Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("tcp", sent.get());
+        statistics.put("spool", spooled.get());
+        fallbackChain.addStatistics(statistics);
+        statistics.put("dropped", dropped.get());
+        return statistics;
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+/**
+ * Reason why a message has been dropped.
+ */
+public enum DropReason {
+
+    /** A queue (e.g. the encoder queue or the queue of a fan-out destination) was full. */
+    QUEUE_OVERFLOW,
+
+    /** The message exceeded the size limit of the transport (e.g. too many UDP chunks). */
+    MESSAGE_TOO_LARGE,
+
+    /** The message couldn't be sent (and was neither spooled nor taken by a fallback). */
+    SEND_FAILURE,
+
+    /** The message couldn't be created by the layout. */
+    ENCODING_FAILURE,
+
+    /** The event exceeded the rate limit of its logger (or MDC value). */
+    RATE_LIMITED
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.MarkerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * Counts dropped messages per {@link DropReason} and periodically creates a summary event, so
+ * that Graylog learns about the lost messages. No summary is created for intervals without
+ * dropped messages. If a summary couldn't be sent (e.g. while the server is unreachable), its
+ * counts are carried over to the next summary.
+ */
+final class DropSummary implements Runnable {
+
+    /** Marker of summary events. */
+    static final String MARKER = "GELF_DROP_SUMMARY";
+
+    private static final DropReason[] REASONS = DropReason.values();
+
+    private final AtomicLongArray counts = new AtomicLongArray(REASONS.length);
+
+    private final AbstractGelfAppender appender;
+
+    private long windowStart = System.currentTimeMillis();
+
+    private ScheduledFuture<?> task;
+
+    private DropSummary(final AbstractGelfAppender appender) {
+        this.appender = appender;
+    }
+
+    /**
+     * Creates a new drop summary and schedules its periodic summary.
+     *
+     * @param appender the appender the summary is sent with.
+     * @param scheduler the scheduler used for the periodic summary.
+     * @param interval the interval (in milliseconds). A value of 0 disables summaries - drops
+     *     are counted nevertheless.
+     * @return the scheduled drop summary.
+     */
+    static DropSummary schedule(final AbstractGelfAppender appender,
+                                final ScheduledExecutorService scheduler,
+                                final long interval) {
+        final DropSummary dropSummary = new DropSummary(appender);
+
+        if (interval > 0) {
+            dropSummary.task = scheduler.scheduleWithFixedDelay(dropSummary, interval, interval,
+                TimeUnit.MILLISECONDS);
+        }
+
+        return dropSummary;
+    }
+
+    void dropped(final DropReason reason) {
+        counts.incrementAndGet(reason.ordinal());
+    }
+
+    @Override
+    public synchronized void run() {
+        final Map<String, Object> fields = new HashMap<>();
+        final long[] taken = new long[REASONS.length];
+        long total = 0;
+        for (final DropReason reason : REASONS) {
+            final long count = counts.getAndSet(reason.ordinal(), 0);
+            taken[reason.ordinal()] = count;
+            if (count > 0) {
+                fields.put("dropped_" + reason.name().toLowerCase(Locale.ROOT),
+                    String.valueOf(count));
+                total += count;
+            }
+        }
+
+        final long windowEnd = System.currentTimeMillis();
+        if (total > 0) {
+            fields.put("dropped_total", String.valueOf(total));
+            fields.put("drop_window_start", String.valueOf(windowStart));
+            fields.put("drop_window_end", String.valueOf(windowEnd));
+            if (!appender.sendDropSummary(buildEvent(total, windowEnd), fields)) {
+                // Keep the window open - summarized along with the next interval
+                for (int i = 0; i < taken.length; i++) {
+                    counts.addAndGet(i, taken[i]);
+                }
+                return;
+            }
+        }
+
+        windowStart = windowEnd;
+    }
+
+    private ILoggingEvent buildEvent(final long total, final long windowEnd) {
+        final LoggingEvent event = new LoggingEvent();
+        event.setLoggerName(DropSummary.class.getName());
+        event.setThreadName(Thread.currentThread().getName());
+        event.setLevel(Level.WARN);
+        event.setMarker(MarkerFactory.getMarker(MARKER));
+        event.setTimeStamp(windowEnd);
+        event.setMessage(String.format("%d GELF message(s) dropped by appender %s within the "
+            + "last %d ms", total, appender.getName(), windowEnd - windowStart));
+        // Counts are passed as fields of the message - independent of includeMdcData
+        event.setMDCPropertyMap(Collections.<String, String>emptyMap());
+        event.setCallerData(new StackTraceElement[0]);
+        return event;
+    }
+
+    /**
+     * Stops the periodic summary and sends a summary of the drops counted so far.
+     */
+    void close() {
+        if (task != null) {
+            task.cancel(false);
+            run();
+        }
+    }
+
+}
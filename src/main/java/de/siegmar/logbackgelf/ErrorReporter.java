@@ -0,0 +1,114 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.qos.logback.core.spi.ContextAware;
+
+/**
+ * Aggregates errors, so that an outage doesn't flood the status manager. The first error of
+ * every interval is reported (with its stack trace), further errors are only counted and
+ * reported as a summary at the end of the interval.
+ */
+final class ErrorReporter implements Runnable {
+
+    private final AtomicBoolean reported = new AtomicBoolean();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    private final ContextAware reporter;
+    private final long interval;
+
+    private volatile String lastMessage;
+    private volatile Throwable lastError;
+
+    private ScheduledFuture<?> task;
+
+    private ErrorReporter(final ContextAware reporter, final long interval) {
+        this.reporter = reporter;
+        this.interval = interval;
+    }
+
+    /**
+     * Creates a new error reporter and schedules its periodic summary.
+     *
+     * @param reporter the component used to report the errors.
+     * @param scheduler the scheduler used for the periodic summary.
+     * @param interval the interval (in milliseconds). A value of 0 reports every error.
+     * @return the scheduled error reporter.
+     */
+    static ErrorReporter schedule(final ContextAware reporter,
+                                  final ScheduledExecutorService scheduler,
+                                  final long interval) {
+        final ErrorReporter errorReporter = new ErrorReporter(reporter, interval);
+
+        if (interval > 0) {
+            errorReporter.task = scheduler.scheduleWithFixedDelay(errorReporter, interval,
+                interval, TimeUnit.MILLISECONDS);
+        }
+
+        return errorReporter;
+    }
+
+    /**
+     * Reports the given error - or counts it, if an error has already been reported within
+     * the current interval. Neither allocates nor formats for counted errors.
+     *
+     * @param message the error message.
+     * @param error the cause or {@code null}.
+     */
+    void report(final String message, final Throwable error) {
+        if (task == null || reported.compareAndSet(false, true)) {
+            reporter.addError(message, error);
+            return;
+        }
+
+        lastMessage = message;
+        lastError = error;
+        suppressed.incrementAndGet();
+    }
+
+    @Override
+    public void run() {
+        final long count = suppressed.getAndSet(0);
+        if (count > 0) {
+            final Throwable error = lastError;
+            reporter.addError(String.format("%s - %d more time(s) within the last %d ms%s",
+                lastMessage, count, interval, error != null ? " (last cause: " + error + ")" : ""));
+        }
+
+        reported.set(false);
+    }
+
+    /**
+     * Stops the periodic summary and reports the errors counted so far.
+     */
+    void close() {
+        if (task != null) {
+            task.cancel(false);
+            run();
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+
+/**
+ * Chain of fallback appenders for messages that couldn't be sent by the primary transport.
+ * <p>
+ * The appenders are tried in the order they have been added. GELF appenders receive the
+ * already encoded message - a GELF appender failing to send the message is skipped. Other
+ * appenders (e.g. a file appender) receive the logging event and are considered successful.
+ */
+class FallbackChain {
+
+    private final List<Fallback> fallbacks = new CopyOnWriteArrayList<>();
+
+    void add(final Appender<ILoggingEvent> appender) {
+        fallbacks.add(new Fallback(appender));
+    }
+
+    boolean isEmpty() {
+        return fallbacks.isEmpty();
+    }
+
+    /**
+     * Passes the message to the first fallback appender that is able to handle it.
+     *
+     * @param event the logging event or {@code null} if not available.
+     * @param message the GELF message (without framing).
+     * @return {@code true} if a fallback appender took the message.
+     */
+    boolean append(final ILoggingEvent event, final byte[] message) {
+        for (final Fallback fallback : fallbacks) {
+            if (fallback.append(event, message)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds the number of messages taken by each fallback appender (by name) to the given map.
+     */
+    void addStatistics(final Map<String, Long> statistics) {
+        for (final Fallback fallback : fallbacks) {
+            statistics.put(fallback.getName(), fallback.count.get());
+        }
+    }
+
+    void stop() {
+        for (final Fallback fallback : fallbacks) {
+            fallback.appender.stop();
+        }
+    }
+
+    private static final class Fallback {
+
+        private final Appender<ILoggingEvent> appender;
+        private final AtomicLong count = new AtomicLong();
+
+        Fallback(final Appender<ILoggingEvent> appender) {
+            this.appender = appender;
+        }
+
+        String getName() {
+            return appender.getName() != null
+                ? appender.getName() : appender.getClass().getSimpleName();
+        }
+
+        boolean append(final ILoggingEvent event, final byte[] message) {
+            if (!appender.isStarted()) {
+                return false;
+            }
+
+            final boolean appended;
+            if (appender instanceof AbstractGelfAppender) {
+                appended = appendMessage((AbstractGelfAppender) appender, event, message);
+            } else if (event != null) {
+                appender.doAppend(event);
+                appended = true;
+            } else {
+                appended = false;
+            }
+
+            if (appended) {
+                count.incrementAndGet();
+            }
+
+            return appended;
+        }
+
+        @SuppressWarnings("checkstyle:illegalcatch")
+        private static boolean appendMessage(final AbstractGelfAppender gelfAppender,
+                                             final ILoggingEvent event, final byte[] message) {
+            try {
+                gelfAppender.appendMessage(event, gelfAppender.encodeMessage(message));
+                return true;
+            } catch (final Exception e) {
+                // Try the next one
+                return false;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * A destination of a {@link GelfFanOutAppender}. Messages are queued and sent by a dedicated
+ * thread, so a slow destination doesn't hold back the others. Messages exceeding the queue
+ * size are dropped.
+ */
+final class FanOutDestination {
+
+    private static final long SHUTDOWN_TIMEOUT = 10_000;
+
+    private final AbstractGelfAppender appender;
+    private final ThreadPoolExecutor sender;
+    private final AtomicLong dropped = new AtomicLong();
+
+    FanOutDestination(final AbstractGelfAppender appender, final int queueSize) {
+        this.appender = appender;
+
+        final String threadName = "gelf-fanout-" + getName();
+        sender = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, threadName);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
+    String getName() {
+        return appender.getName() != null
+            ? appender.getName() : appender.getClass().getSimpleName();
+    }
+
+    String messageEncoding() {
+        return appender.messageEncoding();
+    }
+
+    byte[] encode(final byte[] message) {
+        final byte[] encodedMessage = appender.encodeMessage(message);
+        appender.getMetrics().encoded(message.length, encodedMessage.length);
+        return encodedMessage;
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Queues the given message for sending.
+     *
+     * @param event the logging event (prepared for deferred processing) or {@code null}.
+     * @param message the message, encoded for this destination. Must not be modified.
+     */
+    void send(final ILoggingEvent event, final byte[] message) {
+        if (!appender.isStarted()) {
+            dropped.incrementAndGet();
+            appender.messageDropped(DropReason.SEND_FAILURE);
+            return;
+        }
+
+        try {
+            sender.execute(new Runnable() {
+                @SuppressWarnings("checkstyle:illegalcatch")
+                @Override
+                public void run() {
+                    try {
+                        appender.appendMessage(event, message);
+                    } catch (final Exception e) {
+                        appender.getMetrics().sendError();
+                        dropped.incrementAndGet();
+                        appender.messageDropped(e instanceof MessageTooLargeException
+                            ? DropReason.MESSAGE_TOO_LARGE : DropReason.SEND_FAILURE);
+                        appender.reportSendError("Error sending GELF message", e);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            dropped.incrementAndGet();
+            appender.messageDropped(DropReason.QUEUE_OVERFLOW);
+        }
+    }
+
+    /**
+     * Sends the given message on the calling thread - bypassing the queue.
+     *
+     * @param message the message, not yet encoded for this destination.
+     * @return {@code true} if the message has been sent.
+     */
+    @SuppressWarnings("checkstyle:illegalcatch")
+    boolean sendPriority(final byte[] message) {
+        try {
+            return appender.appendPriorityMessage(appender.encodeMessage(message));
+        } catch (final Exception e) {
+            appender.reportSendError("Error sending GELF message", e);
+            return false;
+        }
+    }
+
+    /**
+     * Sends the queued messages (for a limited time) and stops the destination appender.
+     */
+    void stop() {
+        sender.shutdown();
+        try {
+            if (!sender.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                sender.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            sender.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        appender.stop();
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Appender sending each message to multiple destinations (e.g. a primary and a disaster
+ * recovery Graylog cluster). Every event is encoded only once - and compressed only once per
+ * compression setting of the destinations. Each destination sends from its own queue, so a
+ * slow destination doesn't hold back the others.
+ */
+public class GelfFanOutAppender extends AbstractGelfAppender {
+
+    private static final int DEFAULT_DESTINATION_QUEUE_SIZE = 1024;
+
+    /**
+     * Maximum number of messages queued per destination. If exceeded, messages are dropped for
+     * that destination. Default: 1,024.
+     */
+    private int destinationQueueSize = DEFAULT_DESTINATION_QUEUE_SIZE;
+
+    private final List<AbstractGelfAppender> destinationAppenders = new ArrayList<>();
+
+    private volatile List<FanOutDestination> destinations = new ArrayList<>();
+
+    public int getDestinationQueueSize() {
+        return destinationQueueSize;
+    }
+
+    public void setDestinationQueueSize(final int destinationQueueSize) {
+        this.destinationQueueSize = destinationQueueSize;
+    }
+
+    /**
+     * Adds a destination (e.g. a {@link GelfUdpAppender} or a {@link GelfTcpAppender}). The
+     * layout of the destination is not used. Destinations are stopped along with this
+     * appender.
+     *
+     * @param destination the appender to add.
+     */
+    public void addDestination(final AbstractGelfAppender destination) {
+        destinationAppenders.add(destination);
+    }
+
+    @Override
+    protected boolean isGraylogHostRequired() {
+        // Each destination sends to its own graylogHost
+        return false;
+    }
+
+    @Override
+    protected void startAppender() {
+        if (destinationAppenders.isEmpty()) {
+            throw new IllegalStateException("No destination configured");
+        }
+
+        final List<FanOutDestination> newDestinations = new ArrayList<>();
+        for (final AbstractGelfAppender appender : destinationAppenders) {
+            newDestinations.add(new FanOutDestination(appender, destinationQueueSize));
+        }
+        destinations = newDestinations;
+    }
+
+    @Override
+    protected void appendMessage(final byte[] messageToSend) {
+        appendMessage(null, messageToSend);
+    }
+
+    @Override
+    protected void appendMessage(final ILoggingEvent event, final byte[] messageToSend) {
+        if (event != null) {
+            // Event is passed to other threads
+            event.prepareForDeferredProcessing();
+        }
+
+        // Shared by all destinations with the same message encoding
+        final Map<String, byte[]> encodedMessages = new HashMap<>();
+        encodedMessages.put(messageEncoding(), messageToSend);
+
+        for (final FanOutDestination destination : destinations) {
+            byte[] encodedMessage = encodedMessages.get(destination.messageEncoding());
+            if (encodedMessage == null) {
+                encodedMessage = destination.encode(messageToSend);
+                encodedMessages.put(destination.messageEncoding(), encodedMessage);
+            }
+
+            destination.send(event, encodedMessage);
+        }
+    }
+
+    @Override
+    protected boolean appendPriorityMessage(final byte[] messageToSend) {
+        // Sent, if any destination got it - so it isn't sent twice to the others
+        boolean sent = false;
+        for (final FanOutDestination destination : destinations) {
+            sent |= destination.sendPriority(messageToSend);
+        }
+        return sent;
+    }
+
+    /**
+     * Returns the number of messages dropped per destination (by name) because its queue was
+     * full, it wasn't started or sending failed.
+     *
+     * @return the number of dropped messages per destination.
+     */
+    public Map<String, Long> getDroppedMessages() {
+        final Map<String, Long> dropped = new LinkedHashMap<>();
+        for (final FanOutDestination destination : destinations) {
+            dropped.put(destination.getName(), destination.getDropped());
+        }
+        return dropped;
+    }
+
+    @Override
+    protected void close() {
+        for (final FanOutDestination destination : destinations) {
+            destination.stop();
+        }
+    }
+
+}
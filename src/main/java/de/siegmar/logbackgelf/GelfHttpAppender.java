@@ -0,0 +1,286 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Appender posting GELF messages to a Graylog GELF HTTP input.
+ * <p>
+ * Connections are kept alive and reused by the JDK HTTP client. Unless {@code pinAddress} is
+ * disabled, each request goes to the address selected by the {@link AddressResolver} of the
+ * Graylog hostname, so failing or slow nodes are skipped. HTTPS connections to such an address
+ * still use the hostname for SNI, certificate verification and the TLS session cache - but the
+ * Host header of the request contains the address, as the JDK HTTP client doesn't allow to set
+ * it.
+ */
+public class GelfHttpAppender extends AbstractGelfAppender {
+
+    private static final int DEFAULT_CONNECT_TIMEOUT = 15_000;
+    private static final int DEFAULT_REQUEST_TIMEOUT = 15_000;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 5;
+    private static final int BUFFER_SIZE = 1024;
+
+    /**
+     * If true, HTTPS is used. Default: false.
+     */
+    private boolean useTls;
+
+    /**
+     * Path of the GELF HTTP input. Default: /gelf.
+     */
+    private String path = "/gelf";
+
+    /**
+     * If true, request bodies are gzip compressed. Default: true.
+     */
+    private boolean useCompression = true;
+
+    /**
+     * Maximum number of concurrent requests. Should not exceed the number of connections kept
+     * alive by the JDK ({@code http.maxConnections}, default 5). Default: 5.
+     */
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    /**
+     * Maximum time (in milliseconds) to wait for establishing a connection. A value of 0 disables
+     * the connect timeout. Default: 15,000 milliseconds.
+     */
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+    /**
+     * Maximum time (in milliseconds) to wait for a free request slot and for the response.
+     * Default: 15,000 milliseconds.
+     */
+    private int requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+
+    /**
+     * If true, each request is sent to an address selected by the {@link AddressResolver} and
+     * the Host header contains this address. If false, requests are sent to the hostname
+     * (resolved by the JDK) - required for proxies or ingresses routing by the Host header.
+     * Default: true.
+     */
+    private boolean pinAddress = true;
+
+    private AddressResolver addressResolver;
+
+    private Semaphore inFlight;
+
+    private SSLSocketFactory sslSocketFactory;
+
+    private String inFlightTimeoutMessage;
+
+    public boolean isUseTls() {
+        return useTls;
+    }
+
+    public void setUseTls(final boolean useTls) {
+        this.useTls = useTls;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(final String path) {
+        this.path = path;
+    }
+
+    public boolean isUseCompression() {
+        return useCompression;
+    }
+
+    public void setUseCompression(final boolean useCompression) {
+        this.useCompression = useCompression;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(final int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(final int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(final int requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public boolean isPinAddress() {
+        return pinAddress;
+    }
+
+    public void setPinAddress(final boolean pinAddress) {
+        this.pinAddress = pinAddress;
+    }
+
+    @Override
+    protected void startAppender() throws IOException {
+        inFlight = new Semaphore(maxInFlight);
+
+        // Formatted once - not for every message exceeding the limit
+        inFlightTimeoutMessage = String.format("Error sending message via %s://%s:%d - "
+            + "no request slot available within %d ms", useTls ? "https" : "http",
+            getGraylogHost(), getGraylogPort(), requestTimeout);
+
+        if (!pinAddress) {
+            return;
+        }
+
+        addressResolver = new AddressResolver(getGraylogHost());
+
+        // Requests go to the resolved address - SNI, session cache and certificate use the
+        // hostname
+        sslSocketFactory = new ServerNameSSLSocketFactory(
+            HttpsURLConnection.getDefaultSSLSocketFactory(), getGraylogHost());
+    }
+
+    @Override
+    protected byte[] encodeMessage(final byte[] binMessage) {
+        return useCompression ? Compression.gzip(binMessage) : binMessage;
+    }
+
+    @Override
+    protected String messageEncoding() {
+        return useCompression ? "gzip" : super.messageEncoding();
+    }
+
+    @Override
+    protected void appendMessage(final byte[] body) throws IOException {
+        try {
+            if (!inFlight.tryAcquire(requestTimeout, TimeUnit.MILLISECONDS)) {
+                getMetrics().sendError();
+                messageDropped(DropReason.SEND_FAILURE);
+                reportSendError(inFlightTimeoutMessage, null);
+                return;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a request slot", e);
+        }
+
+        try {
+            post(pinAddress ? addressResolver.resolve() : null, body);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * @param address the address to send the request to or {@code null} to send it to the
+     *     hostname.
+     */
+    private void post(final InetAddress address, final byte[] body) throws IOException {
+        final HttpURLConnection connection = openConnection(address);
+        connection.setFixedLengthStreamingMode(body.length);
+
+        if (address != null) {
+            addressResolver.writeStarted(address);
+        }
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+
+            final int status = connection.getResponseCode();
+            if (status < HttpURLConnection.HTTP_OK
+                || status >= HttpURLConnection.HTTP_MULT_CHOICE) {
+                throw new IOException("Unexpected HTTP status " + status);
+            }
+
+            // Consumed response is required to keep the connection alive
+            consume(connection.getInputStream());
+            success = true;
+        } catch (final IOException e) {
+            consume(connection.getErrorStream());
+            throw e;
+        } finally {
+            if (address != null) {
+                addressResolver.writeCompleted(address, System.nanoTime() - start, success);
+            }
+        }
+    }
+
+    private HttpURLConnection openConnection(final InetAddress address) throws IOException {
+        final String host = address != null ? address.getHostAddress() : getGraylogHost();
+        final URL url = new URL(useTls ? "https" : "http", host, getGraylogPort(), path);
+
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (address != null && connection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+        }
+
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(requestTimeout);
+        connection.setUseCaches(false);
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        if (useCompression) {
+            connection.setRequestProperty("Content-Encoding", "gzip");
+        }
+
+        return connection;
+    }
+
+    private static void consume(final InputStream in) {
+        if (in == null) {
+            return;
+        }
+
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream stream = in) {
+            while (stream.read(buffer) != -1) {
+                // discard
+            }
+        } catch (final IOException e) {
+            // ignore - connection won't be reused
+        }
+    }
+
+    @Override
+    protected void close() {
+    }
+
+}
@@ -34,6 +34,7 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.util.LevelToSyslogSeverity;
 import ch.qos.logback.core.LayoutBase;
+import de.siegmar.logbackgelf.jfr.LayoutEvent;
 
 
 /**
@@ -253,16 +254,38 @@ public class GelfLayout extends LayoutBase<ILoggingEvent> {
 
     @Override
     public String doLayout(final ILoggingEvent event) {
+        return doLayout(event, Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * Creates the GELF message of the given event with additional fields that are included
+     * regardless of the configuration of this layout (e.g. of includeMdcData).
+     *
+     * @param event the event to create the message of.
+     * @param fields the additional fields to include.
+     * @return the GELF message.
+     */
+    String doLayout(final ILoggingEvent event, final Map<String, Object> fields) {
+        final LayoutEvent layoutEvent = new LayoutEvent();
+        layoutEvent.begin();
+
         final String shortMessage = shortPatternLayout.doLayout(event);
         final String fullMessage = fullPatternLayout.doLayout(event);
         final double timestamp = event.getTimeStamp() / MSEC_DIVIDER;
         final Map<String, Object> additionalFields = mapAdditionalFields(event);
+        additionalFields.putAll(fields);
 
         final GelfMessage gelfMessage =
             new GelfMessage(originHost, shortMessage, fullMessage, timestamp,
                 LevelToSyslogSeverity.convert(event), additionalFields);
 
         final String jsonStr = gelfMessage.toJSON();
+
+        if (layoutEvent.shouldCommit()) {
+            layoutEvent.setMessageSize(jsonStr.length());
+            layoutEvent.commit();
+        }
+
         return appendNewline ? jsonStr + System.lineSeparator() : jsonStr;
     }
 
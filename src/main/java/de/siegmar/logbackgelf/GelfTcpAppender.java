@@ -20,22 +20,39 @@
 package de.siegmar.logbackgelf;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Map;
 
 import javax.net.SocketFactory;
 
-import de.siegmar.logbackgelf.pool.PooledObjectConsumer;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+
+import de.siegmar.logbackgelf.pool.PoolStatistics;
 import de.siegmar.logbackgelf.pool.PooledObjectFactory;
 import de.siegmar.logbackgelf.pool.SimpleObjectPool;
+import de.siegmar.logbackgelf.spool.MappedSpool;
 
+@SuppressWarnings("checkstyle:classdataabstractioncoupling")
 public class GelfTcpAppender extends AbstractGelfAppender {
 
     private static final int DEFAULT_CONNECT_TIMEOUT = 15_000;
+    private static final int DEFAULT_CONNECT_ATTEMPT_DELAY = 250;
+    private static final int DEFAULT_WRITE_TIMEOUT = 0;
     private static final int DEFAULT_RECONNECT_INTERVAL = 60;
     private static final int DEFAULT_MAX_RETRIES = 2;
     private static final int DEFAULT_RETRY_DELAY = 3_000;
+    private static final int DEFAULT_CIRCUIT_BREAKER_THRESHOLD = 0;
+    private static final int DEFAULT_CIRCUIT_BREAKER_MAX_BACKOFF = 60_000;
     private static final int DEFAULT_POOL_SIZE = 2;
     private static final int DEFAULT_POOL_MAX_WAIT_TIME = 5_000;
+    private static final int DEFAULT_POOL_GROW_WAIT_TIME = 100;
+    private static final int DEFAULT_POOL_IDLE_TIMEOUT = 60_000;
+    private static final int DEFAULT_MAX_PENDING_SENDS = 10_000;
+    private static final int DEFAULT_SPOOL_SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final long DEFAULT_SPOOL_MAX_SIZE = 64 * 1024 * 1024;
 
     /**
      * Maximum time (in milliseconds) to wait for establishing a connection. A value of 0 disables
@@ -43,12 +60,41 @@ public class GelfTcpAppender extends AbstractGelfAppender {
      */
     private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
 
+    /**
+     * If the Graylog hostname resolves to multiple addresses, the next address (preferably of
+     * the other address family) is tried in parallel, if a connection attempt didn't succeed
+     * within this time (in milliseconds). The first established connection is used.
+     * A value of 0 disables parallel connection attempts. Default: 250 milliseconds.
+     */
+    private int connectAttemptDelay = DEFAULT_CONNECT_ATTEMPT_DELAY;
+
+    /**
+     * Maximum time (in milliseconds) a write may block without any progress. If exceeded, the
+     * connection is closed and the message counts as not sent. A value of 0 disables the write
+     * timeout. Default: 15,000 milliseconds.
+     */
+    private int writeTimeout = DEFAULT_WRITE_TIMEOUT;
+
     /**
      * Time interval (in seconds) after an existing connection is closed and re-opened.
      * A value of -1 disables automatic reconnects. Default: 60 seconds.
      */
     private int reconnectInterval = DEFAULT_RECONNECT_INTERVAL;
 
+    /**
+     * Maximum time (in seconds) the reconnect interval of each connection is randomly shortened
+     * by. Spreads the reconnects of connections opened at the same time (e.g. by many identical
+     * applications started together). Must not exceed reconnectInterval. A value of 0 disables
+     * the jitter. Default: 0 seconds.
+     */
+    private int reconnectJitter;
+
+    /**
+     * Minimum time (in milliseconds) between two reconnects caused by the reconnect interval.
+     * A value of 0 disables the limit. Default: 0 milliseconds.
+     */
+    private int minReconnectPause;
+
     /**
      * Number of retries. A value of 0 disables retry attempts. Default: 2.
      */
@@ -60,18 +106,137 @@ public class GelfTcpAppender extends AbstractGelfAppender {
      */
     private int retryDelay = DEFAULT_RETRY_DELAY;
 
+    /**
+     * Number of consecutive failed sends after which the circuit breaker opens. While open,
+     * messages are not sent (but spooled, if enabled) - without retries and retry delays.
+     * A value of 0 disables the circuit breaker. Default: 5.
+     */
+    private int circuitBreakerThreshold = DEFAULT_CIRCUIT_BREAKER_THRESHOLD;
+
+    /**
+     * Maximum time (in milliseconds) the circuit breaker stays open before it probes the server
+     * again. The first probe is performed after retryDelay, the time is doubled for every
+     * failed probe. Default: 60,000 milliseconds.
+     */
+    private int circuitBreakerMaxBackoff = DEFAULT_CIRCUIT_BREAKER_MAX_BACKOFF;
+
     /**
      * Number of concurrent tcp connections (minimum 1). Default: 2.
      */
     private int poolSize = DEFAULT_POOL_SIZE;
 
+    /**
+     * Maximum number of concurrent tcp connections the pool grows to under load. A value
+     * lower than poolSize disables growing. Default: 0 (pool size is fixed).
+     */
+    private int maxPoolSize;
+
+    /**
+     * Time (in milliseconds) a logging thread waits for a connection before an additional
+     * connection is opened. Ignored if maxPoolSize isn't set. Default: 100 milliseconds.
+     */
+    private int poolGrowWaitTime = DEFAULT_POOL_GROW_WAIT_TIME;
+
+    /**
+     * Time (in milliseconds) after which idle connections exceeding poolSize are closed.
+     * Ignored if maxPoolSize isn't set. Default: 60,000 milliseconds.
+     */
+    private int poolIdleTimeout = DEFAULT_POOL_IDLE_TIMEOUT;
+
     /**
      * Maximum amount of time (in milliseconds) to wait for a connection to become
      * available from the pool. A value of -1 disables the timeout. Default: 5,000 milliseconds.
      */
     private int poolMaxWaitTime = DEFAULT_POOL_MAX_WAIT_TIME;
 
-    private SimpleObjectPool<TcpConnection> connectionPool;
+    /**
+     * Number of additional tcp connections reserved for events at or above priorityLevel.
+     * These events never wait for connections used by events of lower levels. A value of 0
+     * disables the priority connections. Default: 0.
+     */
+    private int priorityPoolSize;
+
+    /**
+     * Minimum level of events sent via the priority connections. Default: WARN.
+     */
+    private Level priorityLevel = Level.WARN;
+
+    /**
+     * If true, a thread holding a connection also writes the messages other threads logged in
+     * the meantime - with a single write. Every thread still returns only after its message
+     * has been written. Reduces the number of writes if many threads log concurrently.
+     * Default: false.
+     */
+    private boolean combineWrites;
+
+    /**
+     * If true, messages are sent on virtual threads (requires Java 21 or newer), so retries and
+     * slow writes don't block the logging threads. The number of concurrent sends is limited to
+     * the number of connections. Messages may be sent out of order. Default: false.
+     */
+    private boolean virtualThreadSender;
+
+    /**
+     * Maximum time (in milliseconds) a logging thread waits for a free send slot of the virtual
+     * thread sender. Messages without a free slot are handled like messages that couldn't be
+     * sent. A value of -1 never waits (fire-and-forget) - the virtual threads wait instead.
+     * Default: -1.
+     */
+    private int handoffTimeout = -1;
+
+    /**
+     * Maximum number of messages handed off to the virtual thread sender, but not sent yet.
+     * Further messages are handled like messages that couldn't be sent (queue overflow).
+     * Default: 10,000.
+     */
+    private int maxPendingSends = DEFAULT_MAX_PENDING_SENDS;
+
+    /**
+     * Directory used to spool messages to disk that couldn't be sent. Spooled messages are
+     * replayed (in order) in background as soon as the server is reachable again. Messages are
+     * spooled without retries and retry delays. Default: none (spooling disabled).
+     */
+    private String spoolDirectory;
+
+    /**
+     * Size (in bytes) of each spool segment file. Default: 8 MiB.
+     */
+    private int spoolSegmentSize = DEFAULT_SPOOL_SEGMENT_SIZE;
+
+    /**
+     * Maximum size (in bytes) of all spool segment files. If exceeded, the oldest segment is
+     * discarded. Default: 64 MiB.
+     */
+    private long spoolMaxSize = DEFAULT_SPOOL_MAX_SIZE;
+
+    /**
+     * Appenders messages are passed to, if they couldn't be sent (and aren't spooled). Tried in
+     * order. If a fallback appender is configured, failed messages are passed on without
+     * retries and retry delays.
+     */
+    private final FallbackChain fallbackChain = new FallbackChain();
+
+    private final DeliveryCounters deliveryCounters = new DeliveryCounters();
+
+    private SimpleObjectPool<AbstractTcpConnection> connectionPool;
+
+    private SimpleObjectPool<AbstractTcpConnection> priorityPool;
+
+    private CombiningWriter combiningWriter;
+
+    private AsyncSender asyncSender;
+
+    private MappedSpool spool;
+
+    private SpoolReplayer spoolReplayer;
+
+    private WriteTimeoutWatchdog writeTimeoutWatchdog;
+
+    private CircuitBreaker circuitBreaker;
+
+    private String sendErrorMessage;
+
+    private String poolTimeoutMessage;
 
     public int getConnectTimeout() {
         return connectTimeout;
@@ -81,6 +246,22 @@ public class GelfTcpAppender extends AbstractGelfAppender {
         this.connectTimeout = connectTimeout;
     }
 
+    public int getConnectAttemptDelay() {
+        return connectAttemptDelay;
+    }
+
+    public void setConnectAttemptDelay(final int connectAttemptDelay) {
+        this.connectAttemptDelay = connectAttemptDelay;
+    }
+
+    public int getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    public void setWriteTimeout(final int writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+
     public int getReconnectInterval() {
         return reconnectInterval;
     }
@@ -89,6 +270,22 @@ public class GelfTcpAppender extends AbstractGelfAppender {
         this.reconnectInterval = reconnectInterval;
     }
 
+    public int getReconnectJitter() {
+        return reconnectJitter;
+    }
+
+    public void setReconnectJitter(final int reconnectJitter) {
+        this.reconnectJitter = reconnectJitter;
+    }
+
+    public int getMinReconnectPause() {
+        return minReconnectPause;
+    }
+
+    public void setMinReconnectPause(final int minReconnectPause) {
+        this.minReconnectPause = minReconnectPause;
+    }
+
     public int getMaxRetries() {
         return maxRetries;
     }
@@ -105,6 +302,22 @@ public class GelfTcpAppender extends AbstractGelfAppender {
         this.retryDelay = retryDelay;
     }
 
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    public void setCircuitBreakerThreshold(final int circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+    }
+
+    public int getCircuitBreakerMaxBackoff() {
+        return circuitBreakerMaxBackoff;
+    }
+
+    public void setCircuitBreakerMaxBackoff(final int circuitBreakerMaxBackoff) {
+        this.circuitBreakerMaxBackoff = circuitBreakerMaxBackoff;
+    }
+
     public int getPoolSize() {
         return poolSize;
     }
@@ -113,6 +326,67 @@ public class GelfTcpAppender extends AbstractGelfAppender {
         this.poolSize = poolSize;
     }
 
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(final int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getPoolGrowWaitTime() {
+        return poolGrowWaitTime;
+    }
+
+    public void setPoolGrowWaitTime(final int poolGrowWaitTime) {
+        this.poolGrowWaitTime = poolGrowWaitTime;
+    }
+
+    public int getPoolIdleTimeout() {
+        return poolIdleTimeout;
+    }
+
+    public void setPoolIdleTimeout(final int poolIdleTimeout) {
+        this.poolIdleTimeout = poolIdleTimeout;
+    }
+
+    /**
+     * Returns the current size and the borrow wait times of the connection pool.
+     *
+     * @return the pool statistics or {@code null} if the appender isn't started.
+     */
+    public PoolStatistics getPoolStatistics() {
+        final SimpleObjectPool<AbstractTcpConnection> pool = connectionPool;
+        return pool != null ? pool.getStatistics() : null;
+    }
+
+    public int getPriorityPoolSize() {
+        return priorityPoolSize;
+    }
+
+    public void setPriorityPoolSize(final int priorityPoolSize) {
+        this.priorityPoolSize = priorityPoolSize;
+    }
+
+    public String getPriorityLevel() {
+        return priorityLevel.toString();
+    }
+
+    public void setPriorityLevel(final String priorityLevel) {
+        this.priorityLevel = Level.toLevel(priorityLevel, Level.WARN);
+    }
+
+    /**
+     * Returns the current size and the borrow wait times of the priority connection pool.
+     *
+     * @return the pool statistics or {@code null} if the appender isn't started or no priority
+     *     connections are configured.
+     */
+    public PoolStatistics getPriorityPoolStatistics() {
+        final SimpleObjectPool<AbstractTcpConnection> pool = priorityPool;
+        return pool != null ? pool.getStatistics() : null;
+    }
+
     public long getPoolMaxWaitTime() {
         return poolMaxWaitTime;
     }
@@ -121,31 +395,221 @@ public class GelfTcpAppender extends AbstractGelfAppender {
         this.poolMaxWaitTime = poolMaxWaitTime;
     }
 
-    protected void startAppender() {
-        final AddressResolver addressResolver = new AddressResolver(getGraylogHost());
+    public boolean isCombineWrites() {
+        return combineWrites;
+    }
 
-        connectionPool = new SimpleObjectPool<>(new PooledObjectFactory<TcpConnection>() {
-            @Override
-            public TcpConnection newInstance() {
-                return new TcpConnection(initSocketFactory(),
-                    addressResolver, getGraylogPort(), connectTimeout);
-            }
-        }, poolSize, poolMaxWaitTime, reconnectInterval);
+    public void setCombineWrites(final boolean combineWrites) {
+        this.combineWrites = combineWrites;
+    }
+
+    /**
+     * Adds a fallback appender (e.g. a {@link GelfUdpAppender} or a file appender). Fallback
+     * appenders are stopped along with this appender.
+     *
+     * @param fallbackAppender the appender to add.
+     */
+    public void addFallbackAppender(final Appender<ILoggingEvent> fallbackAppender) {
+        fallbackChain.add(fallbackAppender);
+    }
+
+    public boolean isVirtualThreadSender() {
+        return virtualThreadSender;
+    }
+
+    public void setVirtualThreadSender(final boolean virtualThreadSender) {
+        this.virtualThreadSender = virtualThreadSender;
+    }
+
+    public int getHandoffTimeout() {
+        return handoffTimeout;
+    }
+
+    public void setHandoffTimeout(final int handoffTimeout) {
+        this.handoffTimeout = handoffTimeout;
+    }
+
+    public int getMaxPendingSends() {
+        return maxPendingSends;
+    }
+
+    public void setMaxPendingSends(final int maxPendingSends) {
+        this.maxPendingSends = maxPendingSends;
+    }
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public void setSpoolDirectory(final String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public int getSpoolSegmentSize() {
+        return spoolSegmentSize;
+    }
+
+    public void setSpoolSegmentSize(final int spoolSegmentSize) {
+        this.spoolSegmentSize = spoolSegmentSize;
+    }
+
+    public long getSpoolMaxSize() {
+        return spoolMaxSize;
+    }
+
+    public void setSpoolMaxSize(final long spoolMaxSize) {
+        this.spoolMaxSize = spoolMaxSize;
+    }
+
+    protected void startAppender() throws IOException {
+        // Formatted once - not for every failed message
+        sendErrorMessage = "Error sending message via " + endpoint();
+        poolTimeoutMessage = String.format("%s - no connection available within %d ms",
+            sendErrorMessage, poolMaxWaitTime);
+
+        circuitBreaker = new CircuitBreaker(this, circuitBreakerThreshold, retryDelay,
+            circuitBreakerMaxBackoff);
+
+        // Everything that may fail is done before connections are opened in background
+        PooledObjectFactory<AbstractTcpConnection> connectionFactory = initConnectionFactory();
+
+        if (virtualThreadSender) {
+            asyncSender = AsyncSender.virtualThreads(
+                Math.max(poolSize, maxPoolSize) + priorityPoolSize, handoffTimeout,
+                maxPendingSends);
+        }
+
+        if (spoolDirectory != null) {
+            spool = new MappedSpool(Paths.get(spoolDirectory), spoolSegmentSize, spoolMaxSize);
+            spool.open();
+        }
+
+        if (writeTimeout > 0) {
+            writeTimeoutWatchdog = WriteTimeoutWatchdog.schedule(
+                getContext().getScheduledExecutorService(), writeTimeout);
+            connectionFactory = writeTimeoutWatchdog.watch(connectionFactory);
+        }
+
+        connectionFactory = AbstractTcpConnection.countConnects(connectionFactory, getMetrics());
+
+        connectionPool = new SimpleObjectPool<>(connectionFactory, poolSize,
+            Math.max(poolSize, maxPoolSize), poolMaxWaitTime, reconnectInterval, reconnectJitter,
+            minReconnectPause);
+        connectionPool.setGrowWaitTime(poolGrowWaitTime);
+        connectionPool.setIdleTimeout(poolIdleTimeout);
+        getMetrics().addPool(connectionPool, poolSize);
+
+        // Connect and reconnect in background - not on the logging thread
+        connectionPool.start(getContext().getScheduledExecutorService());
+
+        if (priorityPoolSize > 0) {
+            // Own connections - not affected by the load of lower level events
+            priorityPool = new SimpleObjectPool<>(connectionFactory, priorityPoolSize,
+                poolMaxWaitTime, reconnectInterval, reconnectJitter, minReconnectPause);
+            getMetrics().addPool(priorityPool, priorityPoolSize);
+            priorityPool.start(getContext().getScheduledExecutorService());
+        }
+
+        if (combineWrites) {
+            combiningWriter = new CombiningWriter(connectionPool);
+        }
+
+        if (spool != null) {
+            spoolReplayer = SpoolReplayer.schedule(this, spool, connectionPool, circuitBreaker,
+                Math.max(1, retryDelay));
+        }
+    }
+
+    /**
+     * Describes the endpoint the messages are sent to - used for error messages.
+     *
+     * @return the endpoint, e.g. {@code tcp://graylog.example.com:12201}.
+     */
+    protected String endpoint() {
+        return String.format("tcp://%s:%s", getGraylogHost(), getGraylogPort());
+    }
+
+    /**
+     * Creates the factory for all connections of this appender.
+     *
+     * @return the connection factory.
+     */
+    PooledObjectFactory<AbstractTcpConnection> initConnectionFactory() {
+        // Shared by all connections (e.g. for TLS session resumption)
+        return TcpConnection.factory(initSocketFactory(), new AddressResolver(getGraylogHost()),
+            getGraylogPort(), connectTimeout, connectAttemptDelay);
     }
 
+    /**
+     * Creates the socket factory used for all connections of this appender. Called once per
+     * start of the appender.
+     *
+     * @return the socket factory.
+     */
     protected SocketFactory initSocketFactory() {
         return SocketFactory.getDefault();
     }
 
     @Override
     protected void appendMessage(final byte[] messageToSend) {
+        appendMessage(null, messageToSend);
+    }
+
+    @Override
+    protected void appendMessage(final ILoggingEvent event, final byte[] messageToSend) {
+        if (asyncSender == null) {
+            deliver(event, messageToSend);
+            return;
+        }
+
+        final boolean handedOff = asyncSender.submit(new Runnable() {
+            @Override
+            public void run() {
+                deliver(event, messageToSend);
+            }
+        });
+
+        if (!handedOff) {
+            fallback(event, messageToSend, DropReason.QUEUE_OVERFLOW);
+        }
+    }
+
+    private void deliver(final ILoggingEvent event, final byte[] messageToSend) {
         // GELF via TCP requires 0 termination
         final byte[] tcpMessage = Arrays.copyOf(messageToSend, messageToSend.length + 1);
+        final boolean priority = priorityPool != null && event != null
+            && event.getLevel().isGreaterOrEqual(priorityLevel);
+
+        if (spool != null) {
+            // Keep the order - as long as the spool isn't drained, new messages are queued up
+            if ((!spool.isEmpty() || !sendMessage(tcpMessage, priority))
+                && !spoolMessage(tcpMessage)) {
+
+                fallback(event, messageToSend, DropReason.SEND_FAILURE);
+            }
+            return;
+        }
+
+        if (!sendWithRetries(tcpMessage, priority)) {
+            fallback(event, messageToSend, DropReason.SEND_FAILURE);
+        }
+    }
 
+    private boolean sendWithRetries(final byte[] tcpMessage, final boolean priority) {
         int openRetries = maxRetries;
         do {
-            if (sendMessage(tcpMessage)) {
+            if (openRetries < maxRetries) {
+                getMetrics().retry();
+            }
+
+            if (sendMessage(tcpMessage, priority)) {
                 // Message was sent successfully - we're done with it
+                return true;
+            }
+
+            if (!circuitBreaker.isClosed() || !fallbackChain.isEmpty()) {
+                // Fail fast - no retries (and retry delays) while the circuit is open or
+                // a fallback is available
                 break;
             }
 
@@ -158,37 +622,131 @@ public class GelfTcpAppender extends AbstractGelfAppender {
                 }
             }
         } while (openRetries-- > 0 && isStarted());
+
+        return false;
+    }
+
+    private void fallback(final ILoggingEvent event, final byte[] messageToSend,
+                          final DropReason reason) {
+        if (!fallbackChain.append(event, messageToSend)) {
+            deliveryCounters.dropped();
+            messageDropped(reason);
+        }
+    }
+
+    @Override
+    protected boolean appendPriorityMessage(final byte[] messageToSend) {
+        // Sent on the calling thread (via the priority connections, if configured) - without
+        // handoff, retries, spool and fallback
+        return sendMessage(Arrays.copyOf(messageToSend, messageToSend.length + 1),
+            priorityPool != null);
     }
 
     /**
      * Send message to socket's output stream.
      *
      * @param messageToSend message to send.
+     * @param priority if the message has to be sent via the priority connections.
      *
      * @return {@code true} if message was sent successfully, {@code false} otherwise.
      */
     @SuppressWarnings("checkstyle:illegalcatch")
-    private boolean sendMessage(final byte[] messageToSend) {
+    private boolean sendMessage(final byte[] messageToSend, final boolean priority) {
+        if (!circuitBreaker.allowRequest()) {
+            return false;
+        }
+
         try {
-            connectionPool.execute(new PooledObjectConsumer<TcpConnection>() {
-                @Override
-                public void accept(final TcpConnection tcpConnection) throws IOException {
-                    tcpConnection.write(messageToSend);
-                }
-            });
+            if (write(messageToSend, priority)) {
+                circuitBreaker.recordSuccess();
+                deliveryCounters.sent();
+                return true;
+            }
+
+            // Pool timeout - signalled without an exception. Caused by local overload, not by
+            // the server - so it doesn't count as failure of the circuit breaker.
+            circuitBreaker.recordCancelled();
+            sendFailed(poolTimeoutMessage, null);
         } catch (final Exception e) {
-            addError(String.format("Error sending message via tcp://%s:%s",
-                getGraylogHost(), getGraylogPort()), e);
+            sendFailed(sendErrorMessage, e);
+            circuitBreaker.recordFailure();
+        }
 
-            return false;
+        return false;
+    }
+
+    private boolean write(final byte[] messageToSend, final boolean priority) throws Exception {
+        if (priority) {
+            return AbstractTcpConnection.write(priorityPool, messageToSend);
+        }
+
+        if (combiningWriter != null) {
+            return combiningWriter.write(messageToSend);
+        }
+
+        return AbstractTcpConnection.write(connectionPool, messageToSend);
+    }
+
+    private void sendFailed(final String message, final Exception e) {
+        // Errors are not reported while the circuit is open
+        if (circuitBreaker.isClosed()) {
+            reportSendError(message, e);
         }
 
-        return true;
+        getMetrics().sendError();
+    }
+
+    private boolean spoolMessage(final byte[] tcpMessage) {
+        try {
+            if (spool.append(tcpMessage)) {
+                deliveryCounters.spooled();
+                return true;
+            }
+
+            addWarn("Message exceeds spool segment size - message not spooled");
+        } catch (final IOException e) {
+            addError("Couldn't spool message", e);
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of messages per transport: sent via tcp, spooled, taken by each
+     * fallback appender (by name) and dropped.
+     *
+     * @return the number of messages per transport.
+     */
+    public Map<String, Long> getTransportStatistics() {
+        return deliveryCounters.snapshot(fallbackChain);
     }
 
     @Override
     protected void close() {
+        if (asyncSender != null) {
+            // Complete the handed off sends while the connections are still open
+            asyncSender.close();
+        }
+
+        if (spoolReplayer != null) {
+            spoolReplayer.cancel();
+        }
+
         connectionPool.close();
+
+        if (priorityPool != null) {
+            priorityPool.close();
+        }
+
+        if (writeTimeoutWatchdog != null) {
+            writeTimeoutWatchdog.cancel();
+        }
+
+        if (spool != null) {
+            spool.close();
+        }
+
+        fallbackChain.stop();
     }
 
 }
@@ -19,12 +19,15 @@
 
 package de.siegmar.logbackgelf;
 
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
@@ -36,6 +39,29 @@ public class GelfTcpTlsAppender extends GelfTcpAppender {
      */
     private boolean trustAllCertificates;
 
+    /**
+     * Comma separated list of TLS protocols to enable (e.g. TLSv1.3,TLSv1.2).
+     * Default: JVM default.
+     */
+    private String tlsProtocols;
+
+    /**
+     * Comma separated list of TLS cipher suites to enable. Default: JVM default.
+     */
+    private String tlsCipherSuites;
+
+    /**
+     * Maximum number of TLS sessions cached for resumption. A value of 0 means unlimited.
+     * Default: JVM default.
+     */
+    private Integer sessionCacheSize;
+
+    /**
+     * Time (in seconds) a cached TLS session can be resumed. A value of 0 means unlimited.
+     * Default: JVM default.
+     */
+    private Integer sessionTimeout;
+
     public boolean isTrustAllCertificates() {
         return trustAllCertificates;
     }
@@ -44,20 +70,133 @@ public class GelfTcpTlsAppender extends GelfTcpAppender {
         this.trustAllCertificates = trustAllCertificates;
     }
 
+    public String getTlsProtocols() {
+        return tlsProtocols;
+    }
+
+    public void setTlsProtocols(final String tlsProtocols) {
+        this.tlsProtocols = tlsProtocols;
+    }
+
+    public String getTlsCipherSuites() {
+        return tlsCipherSuites;
+    }
+
+    public void setTlsCipherSuites(final String tlsCipherSuites) {
+        this.tlsCipherSuites = tlsCipherSuites;
+    }
+
+    public Integer getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    public void setSessionCacheSize(final Integer sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    public Integer getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    public void setSessionTimeout(final Integer sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+    }
+
     @Override
     protected SSLSocketFactory initSocketFactory() {
-        if (trustAllCertificates) {
-            addWarn("Enable trustAllCertificates - don't use this in production!");
-            try {
+        final SSLContext context = initSslContext();
+        final String[] protocols = enabledProtocols(context);
+        final String[] cipherSuites = enabledCipherSuites(context);
+
+        if (protocols == null && cipherSuites == null) {
+            return context.getSocketFactory();
+        }
+
+        return new ConfiguredSSLSocketFactory(context.getSocketFactory(), protocols,
+            cipherSuites);
+    }
+
+    /**
+     * Builds a new SSLContext - with its own session cache, shared by all connections of
+     * this appender. This allows (re)connects to resume TLS sessions instead of performing full
+     * handshakes.
+     */
+    SSLContext initSslContext() {
+        final SSLContext context = newSslContext();
+
+        final SSLSessionContext sessionContext = context.getClientSessionContext();
+        if (sessionCacheSize != null) {
+            sessionContext.setSessionCacheSize(sessionCacheSize);
+        }
+        if (sessionTimeout != null) {
+            sessionContext.setSessionTimeout(sessionTimeout);
+        }
+
+        return context;
+    }
+
+    private SSLContext newSslContext() {
+        try {
+            if (trustAllCertificates) {
+                addWarn("Enable trustAllCertificates - don't use this in production!");
                 final SSLContext context = SSLContext.getInstance("TLS");
                 context.init(null, buildNoopTrustManagers(), new SecureRandom());
-                return context.getSocketFactory();
-            } catch (final NoSuchAlgorithmException | KeyManagementException e) {
-                throw new IllegalStateException(e);
+                return context;
+            }
+
+            // Same key and trust material as SSLContext.getDefault() - but own session cache
+            return SSLContext.getInstance("Default");
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the configured protocols supported by the given context or {@code null} if no
+     *     protocols are configured.
+     */
+    String[] enabledProtocols(final SSLContext context) {
+        return supported("protocol", tlsProtocols,
+            context.getSupportedSSLParameters().getProtocols());
+    }
+
+    /**
+     * @return the configured cipher suites supported by the given context or {@code null} if
+     *     no cipher suites are configured.
+     */
+    String[] enabledCipherSuites(final SSLContext context) {
+        return supported("cipher suite", tlsCipherSuites,
+            context.getSupportedSSLParameters().getCipherSuites());
+    }
+
+    /**
+     * Filters the configured (comma separated) values by the supported ones.
+     *
+     * @return the supported values or {@code null} if nothing is configured.
+     */
+    private String[] supported(final String type, final String configured,
+                               final String[] supportedValues) {
+        if (configured == null || configured.trim().isEmpty()) {
+            return null;
+        }
+
+        final List<String> supportedList = Arrays.asList(supportedValues);
+        final List<String> values = new ArrayList<>();
+        for (final String value : configured.split(",")) {
+            final String trimmed = value.trim();
+            if (supportedList.contains(trimmed)) {
+                values.add(trimmed);
+            } else if (!trimmed.isEmpty()) {
+                addWarn("Ignore unsupported TLS " + type + ": " + trimmed);
             }
         }
 
-        return (SSLSocketFactory) SSLSocketFactory.getDefault();
+        if (values.isEmpty()) {
+            throw new IllegalStateException("None of the configured TLS " + type
+                + "s is supported: " + configured);
+        }
+
+        return values.toArray(new String[values.size()]);
     }
 
     private static TrustManager[] buildNoopTrustManagers() {
@@ -0,0 +1,61 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import javax.net.ssl.SSLContext;
+
+import de.siegmar.logbackgelf.pool.PooledObjectFactory;
+
+/**
+ * TLS appender using a non-blocking {@link TlsEngineConnection} (SSLEngine over SocketChannel)
+ * instead of SSLSocket. Supports the same configuration as {@link GelfTcpTlsAppender}.
+ */
+public class GelfTcpTlsEngineAppender extends GelfTcpTlsAppender {
+
+    /**
+     * Number of TLS records a network buffer is capable of - written to the socket at once.
+     */
+    private static final int RECORDS_PER_BUFFER = 4;
+
+    @Override
+    PooledObjectFactory<AbstractTcpConnection> initConnectionFactory() {
+        final AddressResolver addressResolver = new AddressResolver(getGraylogHost());
+        final SSLContext sslContext = initSslContext();
+        final String[] protocols = enabledProtocols(sslContext);
+        final String[] cipherSuites = enabledCipherSuites(sslContext);
+
+        final int packetSize = sslContext.createSSLEngine().getSession().getPacketBufferSize();
+        final DirectBufferPool bufferPool =
+            new DirectBufferPool(RECORDS_PER_BUFFER * Math.max(packetSize,
+                TlsEngineConnection.MAX_RECORD_PLAINTEXT));
+
+        return new PooledObjectFactory<AbstractTcpConnection>() {
+            @Override
+            public AbstractTcpConnection newInstance() {
+                final TlsEngineConnection connection = new TlsEngineConnection(sslContext,
+                    getGraylogHost(), protocols, cipherSuites, bufferPool, addressResolver,
+                    getGraylogPort(), getConnectTimeout());
+                connection.setConnectAttemptDelay(getConnectAttemptDelay());
+                return connection;
+            }
+        };
+    }
+
+}
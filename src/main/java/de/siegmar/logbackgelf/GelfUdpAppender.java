@@ -19,13 +19,14 @@
 
 package de.siegmar.logbackgelf;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
-import java.util.zip.DeflaterOutputStream;
+import java.util.Iterator;
+
+import de.siegmar.logbackgelf.jfr.UdpSendEvent;
 
 public class GelfUdpAppender extends AbstractGelfAppender {
 
@@ -70,27 +71,50 @@ public class GelfUdpAppender extends AbstractGelfAppender {
     }
 
     @Override
-    protected void appendMessage(final byte[] binMessage) throws IOException {
-        final byte[] messageToSend = useCompression ? compress(binMessage) : binMessage;
+    protected byte[] encodeMessage(final byte[] binMessage) {
+        return useCompression ? Compression.deflate(binMessage) : binMessage;
+    }
 
-        final InetSocketAddress remote = new InetSocketAddress(addressResolver.resolve(),
-            getGraylogPort());
+    @Override
+    protected String messageEncoding() {
+        return useCompression ? "deflate" : super.messageEncoding();
+    }
 
-        for (final ByteBuffer chunk : chunker.chunks(messageToSend)) {
-            while (chunk.hasRemaining()) {
-                channel.send(chunk, remote);
-            }
+    @Override
+    protected void appendMessage(final byte[] messageToSend) throws IOException {
+        final InetAddress address = addressResolver.resolve();
+        final InetSocketAddress remote = new InetSocketAddress(address, getGraylogPort());
+
+        final Iterator<? extends ByteBuffer> chunks;
+        try {
+            chunks = chunker.chunks(messageToSend).iterator();
+        } catch (final IllegalArgumentException e) {
+            throw new MessageTooLargeException("Message exceeds the maximum number of chunks", e);
         }
-    }
 
-    private static byte[] compress(final byte[] binMessage) {
-        final ByteArrayOutputStream bos = new ByteArrayOutputStream(binMessage.length);
-        try (OutputStream deflaterOut = new DeflaterOutputStream(bos)) {
-            deflaterOut.write(binMessage);
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
+        // Datagrams are sent without feedback - only local send failures are reported
+        try {
+            while (chunks.hasNext()) {
+                final ByteBuffer chunk = chunks.next();
+                final int bytes = chunk.remaining();
+                final UdpSendEvent sendEvent = new UdpSendEvent();
+                sendEvent.begin();
+
+                while (chunk.hasRemaining()) {
+                    channel.send(chunk, remote);
+                }
+
+                if (sendEvent.shouldCommit()) {
+                    sendEvent.setBytes(bytes);
+                    sendEvent.setAddress(address.getHostAddress());
+                    sendEvent.commit();
+                }
+                getMetrics().udpChunks(1);
+            }
+        } catch (final IOException e) {
+            addressResolver.reportFailure(address);
+            throw e;
         }
-        return bos.toByteArray();
     }
 
     @Override
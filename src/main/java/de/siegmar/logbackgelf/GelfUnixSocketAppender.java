@@ -0,0 +1,74 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+
+import de.siegmar.logbackgelf.pool.PooledObjectFactory;
+
+/**
+ * Appender sending null-delimited GELF messages to a Unix domain socket (e.g. of a local
+ * sidecar). Requires Java 16 or newer and supports the same pooling, retry and spool
+ * configuration as {@link GelfTcpAppender}. The Graylog host and port settings are ignored.
+ */
+public class GelfUnixSocketAppender extends GelfTcpAppender {
+
+    /**
+     * Path of the Unix domain socket file.
+     */
+    private String socketPath;
+
+    public String getSocketPath() {
+        return socketPath;
+    }
+
+    public void setSocketPath(final String socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    @Override
+    protected void startAppender() throws IOException {
+        if (socketPath == null) {
+            throw new IllegalStateException("No socketPath configured");
+        }
+
+        if (!UnixSockets.isSupported()) {
+            throw new IllegalStateException("Unix domain sockets require Java 16 or newer");
+        }
+
+        super.startAppender();
+    }
+
+    @Override
+    protected boolean isGraylogHostRequired() {
+        return false;
+    }
+
+    @Override
+    protected String endpoint() {
+        return "unix:" + socketPath;
+    }
+
+    @Override
+    PooledObjectFactory<AbstractTcpConnection> initConnectionFactory() {
+        return UnixSocketConnection.factory(socketPath, getConnectTimeout());
+    }
+
+}
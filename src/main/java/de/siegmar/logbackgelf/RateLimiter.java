@@ -0,0 +1,104 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket per key, implemented as generic cell rate algorithm (GCRA): every
+ * key only stores the theoretical arrival time of its next event.
+ * <p>
+ * The number of tracked keys is bounded - if exceeded, all further keys share one bucket.
+ */
+final class RateLimiter {
+
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /** Bucket shared by all keys exceeding the maximum number of keys. */
+    private final AtomicLong overflowBucket;
+
+    /** Time (in nanoseconds) between two events at the sustained rate. */
+    private final long emissionInterval;
+
+    /** Time (in nanoseconds) events may arrive ahead of the sustained rate (burst). */
+    private final long tolerance;
+
+    private final int maxKeys;
+
+    /**
+     * @param rate the sustained number of events per second and key.
+     * @param burst the number of events per key that may be sent at once.
+     * @param maxKeys the maximum number of tracked keys.
+     */
+    RateLimiter(final int rate, final int burst, final int maxKeys) {
+        emissionInterval = TimeUnit.SECONDS.toNanos(1) / rate;
+        tolerance = emissionInterval * (Math.max(1, burst) - 1);
+        this.maxKeys = maxKeys;
+        overflowBucket = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a token from the bucket of the given key.
+     *
+     * @param key the key (e.g. the logger name).
+     * @return {@code true} if a token was available, {@code false} if the event has to be
+     *     dropped.
+     */
+    boolean tryAcquire(final String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    boolean tryAcquire(final String key, final long now) {
+        final AtomicLong bucket = bucket(key, now);
+
+        while (true) {
+            final long arrivalTime = bucket.get();
+            // Compared by difference as System.nanoTime() may overflow
+            final long next = arrivalTime - now > 0 ? arrivalTime : now;
+            if (next - now > tolerance) {
+                // Over the limit - the bucket remains unchanged
+                return false;
+            }
+
+            if (bucket.compareAndSet(arrivalTime, next + emissionInterval)) {
+                return true;
+            }
+        }
+    }
+
+    private AtomicLong bucket(final String key, final long now) {
+        final AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+
+        if (buckets.size() >= maxKeys) {
+            return overflowBucket;
+        }
+
+        final AtomicLong newBucket = new AtomicLong(now);
+        final AtomicLong existingBucket = buckets.putIfAbsent(key, newBucket);
+        return existingBucket != null ? existingBucket : newBucket;
+    }
+
+}
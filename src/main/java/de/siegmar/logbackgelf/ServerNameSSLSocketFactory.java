@@ -0,0 +1,106 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * SSLSocketFactory layering TLS under a fixed server name over connected sockets.
+ * <p>
+ * Used for connections to a resolved address: The server name is sent as SNI, keys the TLS
+ * session cache and is verified against the server certificate during the handshake (endpoint
+ * identification) - instead of the address literal of the connected socket. Unconnected sockets
+ * are not supported, so the JDK HTTPS client connects a plain socket and layers TLS over it.
+ */
+final class ServerNameSSLSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+    private final String serverName;
+
+    /**
+     * @param delegate the factory creating the sockets.
+     * @param serverName the hostname to use for SNI, session caching and certificate
+     *     verification.
+     */
+    ServerNameSSLSocketFactory(final SSLSocketFactory delegate, final String serverName) {
+        this.delegate = delegate;
+        this.serverName = serverName;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket(final Socket socket, final String host, final int port,
+                               final boolean autoClose) throws IOException {
+        return configure(delegate.createSocket(socket, serverName, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(final String host, final int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(final String host, final int port,
+                               final InetAddress localHost, final int localPort)
+        throws IOException {
+        return configure(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(final InetAddress host, final int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(final InetAddress address, final int port,
+                               final InetAddress localAddress, final int localPort)
+        throws IOException {
+        return configure(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    /**
+     * Enables the verification of the server certificate against the host of the socket
+     * during the handshake. The JDK HTTPS client skips its own (address based) hostname
+     * verification for such sockets.
+     */
+    private static Socket configure(final Socket socket) {
+        final SSLSocket sslSocket = (SSLSocket) socket;
+        final SSLParameters parameters = sslSocket.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        sslSocket.setSSLParameters(parameters);
+        return sslSocket;
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.siegmar.logbackgelf.pool.PooledObjectConsumer;
+import de.siegmar.logbackgelf.pool.SimpleObjectPool;
+import de.siegmar.logbackgelf.spool.MappedSpool;
+import de.siegmar.logbackgelf.spool.SpoolConsumer;
+
+/**
+ * Background task that drains the disk spool of a {@link GelfTcpAppender} as soon as the
+ * Graylog server is reachable again.
+ * <p>
+ * Only the periodic trigger runs on the (shared) scheduler of the appender's context - the
+ * (potentially long and blocking) replay runs on an own thread, so it doesn't delay other
+ * scheduled tasks like the write timeout watchdog.
+ */
+class SpoolReplayer implements Runnable {
+
+    private final GelfTcpAppender appender;
+    private final MappedSpool spool;
+    private final SimpleObjectPool<AbstractTcpConnection> connectionPool;
+    private final CircuitBreaker circuitBreaker;
+
+    private final AtomicBoolean replaying = new AtomicBoolean();
+
+    private ExecutorService replayExecutor;
+    private ScheduledFuture<?> trigger;
+
+    private boolean failing;
+    private long reportedEvictions;
+
+    SpoolReplayer(final GelfTcpAppender appender, final MappedSpool spool,
+                  final SimpleObjectPool<AbstractTcpConnection> connectionPool,
+                  final CircuitBreaker circuitBreaker) {
+        this.appender = appender;
+        this.spool = spool;
+        this.connectionPool = connectionPool;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Schedules the replay of the given spool - triggered by the scheduler of the appender's
+     * context.
+     *
+     * @param interval the delay (in milliseconds) between two replay attempts.
+     * @return the scheduled replayer.
+     */
+    static SpoolReplayer schedule(final GelfTcpAppender appender, final MappedSpool spool,
+                                  final SimpleObjectPool<AbstractTcpConnection> pool,
+                                  final CircuitBreaker circuitBreaker, final long interval) {
+
+        final SpoolReplayer replayer = new SpoolReplayer(appender, spool, pool, circuitBreaker);
+        replayer.replayExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "gelf-spool-replay");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        replayer.trigger = appender.getContext().getScheduledExecutorService()
+            .scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    replayer.trigger();
+                }
+            }, 0, interval, TimeUnit.MILLISECONDS);
+
+        return replayer;
+    }
+
+    private void trigger() {
+        // A single replay at a time - triggers during a replay are skipped
+        if (!replaying.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            replayExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        SpoolReplayer.this.run();
+                    } finally {
+                        replaying.set(false);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // Cancelled
+            replaying.set(false);
+        }
+    }
+
+    /**
+     * Stops triggering replays. A running replay is stopped as soon as the appender is
+     * stopped.
+     */
+    void cancel() {
+        trigger.cancel(false);
+        replayExecutor.shutdown();
+    }
+
+    @SuppressWarnings("checkstyle:illegalcatch")
+    @Override
+    public void run() {
+        reportEvictions();
+
+        if (spool.isEmpty() || !circuitBreaker.allowRequest()) {
+            return;
+        }
+
+        try {
+            while (appender.isStarted() && !spool.isEmpty()) {
+                spool.drain(new SpoolConsumer() {
+                    @Override
+                    public void accept(final FileChannel channel, final long position,
+                                       final long count) throws Exception {
+                        transfer(channel, position, count);
+                    }
+                });
+            }
+        } catch (final PoolTimeoutException e) {
+            // Local overload - not a failure of the server. Retried with the next run.
+            circuitBreaker.recordCancelled();
+            return;
+        } catch (final Exception e) {
+            circuitBreaker.recordFailure();
+            if (!failing) {
+                failing = true;
+                appender.addWarn("Couldn't replay spooled messages - will retry", e);
+            }
+            return;
+        }
+
+        circuitBreaker.recordSuccess();
+        if (failing) {
+            failing = false;
+            appender.addInfo("Replay of spooled messages resumed");
+        }
+    }
+
+    private void transfer(final FileChannel channel, final long position, final long count)
+        throws Exception {
+
+        final boolean borrowed = connectionPool.tryExecute(
+            new PooledObjectConsumer<AbstractTcpConnection>() {
+                @Override
+                public void accept(final AbstractTcpConnection tcpConnection)
+                    throws IOException {
+                    tcpConnection.write(channel, position, count);
+                }
+            });
+
+        if (!borrowed) {
+            // Keeps the region in the spool
+            throw new PoolTimeoutException();
+        }
+    }
+
+    private void reportEvictions() {
+        final long evictions = spool.getEvictedSegments();
+        if (evictions != reportedEvictions) {
+            appender.addWarn(String.format("Spool size limit reached - discarded %d segment(s) "
+                + "with unsent messages", evictions - reportedEvictions));
+            reportedEvictions = evictions;
+        }
+    }
+
+    /**
+     * Signals that no connection was available to replay the spool.
+     */
+    private static final class PoolTimeoutException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+    }
+
+}
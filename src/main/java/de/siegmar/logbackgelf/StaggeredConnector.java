@@ -0,0 +1,217 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects to one of several addresses by staggered, parallel connection attempts
+ * (Happy Eyeballs, RFC 8305).
+ * <p>
+ * The addresses are tried in the given order. If an attempt hasn't succeeded within the
+ * connection attempt delay (or failed), the next attempt is started - without aborting the
+ * attempts already running. The first established connection is used, all others are closed.
+ * Thus, a blackholed address delays the connect only by the attempt delay - not by the
+ * connect timeout.
+ */
+final class StaggeredConnector {
+
+    private final List<InetAddress> candidates;
+    private final int port;
+    private final long attemptDelay;
+    private final AddressResolver addressResolver;
+    private final Selector selector;
+
+    private int nextCandidate;
+    private int pendingAttempts;
+    private long nextAttemptAt;
+    private IOException lastFailure;
+
+    private StaggeredConnector(final List<InetAddress> candidates, final int port,
+                               final long attemptDelay, final AddressResolver addressResolver)
+        throws IOException {
+
+        this.candidates = candidates;
+        this.port = port;
+        this.attemptDelay = TimeUnit.MILLISECONDS.toNanos(attemptDelay);
+        this.addressResolver = addressResolver;
+        selector = Selector.open();
+    }
+
+    /**
+     * Connects to the first reachable address.
+     *
+     * @param candidates the addresses to connect to, in order of preference.
+     * @param port the port to connect to.
+     * @param attemptDelay the time (in milliseconds) before the next attempt is started.
+     * @param connectTimeout the timeout (in milliseconds) for all attempts together, 0 for
+     *     infinite.
+     * @param addressResolver the resolver the failure of each attempt is reported to.
+     * @return the connected channel (in blocking mode).
+     * @throws IOException if no connection could be established.
+     */
+    static SocketChannel connect(final List<InetAddress> candidates, final int port,
+                                 final long attemptDelay, final int connectTimeout,
+                                 final AddressResolver addressResolver) throws IOException {
+
+        final long deadline = connectTimeout > 0
+            ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectTimeout) : 0;
+
+        final StaggeredConnector connector =
+            new StaggeredConnector(candidates, port, attemptDelay, addressResolver);
+
+        final SocketChannel channel;
+        try {
+            channel = connector.race(deadline);
+        } finally {
+            connector.close();
+        }
+
+        // Possible only after the selector (with all registrations) has been closed
+        channel.configureBlocking(true);
+        return channel;
+    }
+
+    private SocketChannel race(final long deadline) throws IOException {
+        while (true) {
+            final long now = System.nanoTime();
+
+            if (nextCandidate < candidates.size()
+                && (pendingAttempts == 0 || now - nextAttemptAt >= 0)) {
+
+                final SocketChannel connected = startAttempt(candidates.get(nextCandidate++));
+                if (connected != null) {
+                    return connected;
+                }
+                nextAttemptAt = now + attemptDelay;
+                continue;
+            }
+
+            if (pendingAttempts == 0) {
+                throw lastFailure;
+            }
+
+            select(now, deadline);
+
+            final SocketChannel connected = completeAttempts();
+            if (connected != null) {
+                return connected;
+            }
+        }
+    }
+
+    private SocketChannel startAttempt(final InetAddress address) throws IOException {
+        final SocketChannel channel = SocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            final SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT, address);
+
+            if (channel.connect(new InetSocketAddress(address, port))) {
+                key.cancel();
+                return channel;
+            }
+
+            pendingAttempts++;
+        } catch (final IOException e) {
+            // e.g. network unreachable
+            failed(channel, address, e);
+        }
+
+        return null;
+    }
+
+    private void select(final long now, final long deadline) throws IOException {
+        long timeout = nextCandidate < candidates.size() ? nextAttemptAt - now : Long.MAX_VALUE;
+
+        if (deadline != 0) {
+            if (deadline - now <= 0) {
+                throw new SocketTimeoutException("Connect timed out");
+            }
+            timeout = Math.min(timeout, deadline - now);
+        }
+
+        // Rounded up - a timeout of 0 would wait infinitely
+        selector.select(timeout == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(timeout) + 1);
+    }
+
+    private SocketChannel completeAttempts() throws IOException {
+        for (final SelectionKey key : selector.selectedKeys()) {
+            final SocketChannel channel = (SocketChannel) key.channel();
+            final InetAddress address = (InetAddress) key.attachment();
+
+            try {
+                if (channel.finishConnect()) {
+                    key.cancel();
+                    selector.selectedKeys().clear();
+                    return channel;
+                }
+            } catch (final IOException e) {
+                key.cancel();
+                pendingAttempts--;
+                failed(channel, address, e);
+            }
+        }
+
+        selector.selectedKeys().clear();
+        return null;
+    }
+
+    private void failed(final SocketChannel channel, final InetAddress address,
+                        final IOException e) {
+        closeQuietly(channel);
+        addressResolver.reportFailure(address);
+        lastFailure = e;
+    }
+
+    /**
+     * Closes all attempts still pending.
+     */
+    private void close() {
+        for (final SelectionKey key : selector.keys()) {
+            if (key.isValid()) {
+                closeQuietly(key.channel());
+            }
+        }
+
+        try {
+            selector.close();
+        } catch (final IOException e) {
+            // ignore
+        }
+    }
+
+    private static void closeQuietly(final Channel channel) {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            // ignore
+        }
+    }
+
+}
@@ -24,47 +24,164 @@ import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 
 import javax.net.SocketFactory;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
 
-import de.siegmar.logbackgelf.pool.AbstractPooledObject;
+import de.siegmar.logbackgelf.pool.PooledObjectFactory;
 
-public class TcpConnection extends AbstractPooledObject {
+/**
+ * Stream connection created by a {@link SocketFactory} (e.g. for TLS).
+ * <p>
+ * Plain connections of the default socket factory are made via a {@link SocketChannel}, so
+ * bulk transfers (e.g. of spooled data) are passed to the socket by the operating system
+ * ({@link FileChannel#transferTo(long, long, WritableByteChannel)}). Other connections have
+ * no channel of their own - their bulk transfers are copied through a heap buffer.
+ */
+public class TcpConnection extends AbstractTcpConnection {
+
+    private static final long TRANSFER_CHUNK_SIZE = 64 * 1024;
 
-    private final AddressResolver addressResolver;
     private final SocketFactory socketFactory;
-    private final int port;
-    private final int connectTimeout;
 
     private volatile OutputStream outputStream;
 
+    /** The channel of a plain connection or {@code null}. */
+    private volatile SocketChannel socketChannel;
+
     TcpConnection(final SocketFactory socketFactory,
                   final AddressResolver addressResolver, final int port, final int connectTimeout) {
 
-        this.addressResolver = addressResolver;
+        super(addressResolver, port, connectTimeout);
         this.socketFactory = socketFactory;
-        this.port = port;
-        this.connectTimeout = connectTimeout;
     }
 
-    public void write(final byte[] messageToSend) throws IOException {
-        if (outputStream == null) {
-            connect();
+    /**
+     * Creates a factory for connections sharing the given socket factory and address resolver.
+     */
+    static PooledObjectFactory<AbstractTcpConnection> factory(
+        final SocketFactory socketFactory, final AddressResolver addressResolver,
+        final int port, final int connectTimeout, final int connectAttemptDelay) {
+
+        return new PooledObjectFactory<AbstractTcpConnection>() {
+            @Override
+            public AbstractTcpConnection newInstance() {
+                final TcpConnection connection =
+                    new TcpConnection(socketFactory, addressResolver, port, connectTimeout);
+                connection.setConnectAttemptDelay(connectAttemptDelay);
+                return connection;
+            }
+        };
+    }
+
+    @Override
+    protected boolean isConnected() {
+        return outputStream != null;
+    }
+
+    @Override
+    protected void connect(final InetAddress ip) throws IOException {
+        if (socketFactory == SocketFactory.getDefault()) {
+            // Channel based socket - for bulk transfers without copying
+            final SocketChannel channel = SocketChannel.open();
+            try {
+                channel.socket().connect(new InetSocketAddress(ip, getPort()),
+                    getConnectTimeout());
+            } catch (final IOException e) {
+                channel.close();
+                throw e;
+            }
+            connect(channel);
+            return;
+        }
+
+        final Socket socket = socketFactory.createSocket();
+        try {
+            socket.connect(new InetSocketAddress(ip, getPort()), getConnectTimeout());
+            init(socket);
+        } catch (final IOException e) {
+            socket.close();
+            throw e;
         }
+    }
 
+    @Override
+    protected void connect(final SocketChannel channel) throws IOException {
+        final boolean tls = socketFactory instanceof SSLSocketFactory;
+        if (!tls && socketFactory != SocketFactory.getDefault()) {
+            // A custom socket factory has to create the socket by itself
+            super.connect(channel);
+            return;
+        }
+
+        Socket socket = channel.socket();
+        try {
+            if (tls) {
+                // TLS on top of the connected socket
+                final InetAddress ip = socket.getInetAddress();
+                socket = ((SSLSocketFactory) socketFactory)
+                    .createSocket(socket, ip.getHostAddress(), getPort(), true);
+            }
+
+            init(socket);
+        } catch (final IOException e) {
+            socket.close();
+            throw e;
+        }
+
+        if (!tls) {
+            socketChannel = channel;
+        }
+    }
+
+    private void init(final Socket socket) throws IOException {
+        if (socket instanceof SSLSocket) {
+            // Complete the handshake now - not on the first write
+            socket.setSoTimeout(getConnectTimeout());
+            ((SSLSocket) socket).startHandshake();
+            socket.setSoTimeout(0);
+        }
+
+        outputStream = socket.getOutputStream();
+    }
+
+    @Override
+    protected void writeMessage(final byte[] messageToSend) throws IOException {
         outputStream.write(messageToSend);
         outputStream.flush();
     }
 
-    private void connect() throws IOException {
-        final Socket socket = socketFactory.createSocket();
-        final InetAddress ip = addressResolver.resolve();
-        socket.connect(new InetSocketAddress(ip, port), connectTimeout);
-        outputStream = socket.getOutputStream();
+    @Override
+    protected void transfer(final FileChannel channel, final long position, final long count)
+        throws IOException {
+
+        // Without a channel of the socket, transferTo copies through a heap buffer
+        final SocketChannel channelOfSocket = socketChannel;
+        final WritableByteChannel target = channelOfSocket != null
+            ? channelOfSocket : Channels.newChannel(outputStream);
+        long transferred = 0;
+        while (transferred < count) {
+            // Limited chunks - each chunk written restarts the write timeout
+            final long bytes = channel.transferTo(position + transferred,
+                Math.min(TRANSFER_CHUNK_SIZE, count - transferred), target);
+            if (bytes <= 0) {
+                throw new IOException("Spool data truncated at position "
+                    + (position + transferred));
+            }
+            transferred += bytes;
+            writeProgressed();
+        }
+
+        outputStream.flush();
     }
 
     @Override
-    protected void close() {
+    protected void disconnect() {
         if (outputStream != null) {
             try {
                 outputStream.close();
@@ -0,0 +1,370 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+/**
+ * TLS connection based on an {@link SSLEngine} over a non-blocking {@link SocketChannel}.
+ * <p>
+ * All data passed to a single write is packed into as few TLS records (of up to 16 KiB
+ * plaintext each) as possible and several records are written to the socket at once - while
+ * TLS via {@link javax.net.ssl.SSLSocket} produces (at least) one record per flush.
+ * The network buffers are direct buffers, reused by subsequent connections.
+ */
+public class TlsEngineConnection extends AbstractTcpConnection {
+
+    /** Maximum plaintext size of a TLS record. */
+    static final int MAX_RECORD_PLAINTEXT = 16_384;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SSLContext sslContext;
+    private final String peerHost;
+    private final String[] protocols;
+    private final String[] cipherSuites;
+    private final DirectBufferPool bufferPool;
+
+    private volatile boolean connected;
+    private volatile SocketChannel channel;
+    private volatile Selector selector;
+    private SelectionKey key;
+    private SSLEngine engine;
+    private ByteBuffer netOut;
+
+    /**
+     * @param sslContext the context used to create the SSLEngine.
+     * @param peerHost the hostname of the server (used for TLS session resumption).
+     * @param protocols the TLS protocols to enable or {@code null} for the default.
+     * @param cipherSuites the cipher suites to enable or {@code null} for the default.
+     * @param bufferPool the pool of network buffers - capable of holding several TLS records.
+     * @param addressResolver the resolver used to select the address to connect to.
+     * @param port the port to connect to.
+     * @param connectTimeout the timeout (in milliseconds) for connect and handshake.
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    TlsEngineConnection(final SSLContext sslContext, final String peerHost,
+                        final String[] protocols, final String[] cipherSuites,
+                        final DirectBufferPool bufferPool, final AddressResolver addressResolver,
+                        final int port, final int connectTimeout) {
+
+        super(addressResolver, port, connectTimeout);
+        this.sslContext = sslContext;
+        this.peerHost = peerHost;
+        this.protocols = protocols;
+        this.cipherSuites = cipherSuites;
+        this.bufferPool = bufferPool;
+    }
+
+    @Override
+    protected boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    protected synchronized void connect(final InetAddress ip) throws IOException {
+        final long deadline = connectDeadline();
+
+        try {
+            channel = SocketChannel.open();
+            register();
+
+            if (!channel.connect(new InetSocketAddress(ip, getPort()))) {
+                while (!channel.finishConnect()) {
+                    await(SelectionKey.OP_CONNECT, deadline);
+                }
+            }
+
+            startTls(deadline);
+        } catch (final IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    @Override
+    protected synchronized void connect(final SocketChannel connectedChannel)
+        throws IOException {
+
+        final long deadline = connectDeadline();
+
+        try {
+            channel = connectedChannel;
+            register();
+            startTls(deadline);
+        } catch (final IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    private long connectDeadline() {
+        return getConnectTimeout() > 0
+            ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getConnectTimeout()) : 0;
+    }
+
+    private void register() throws IOException {
+        selector = Selector.open();
+        channel.configureBlocking(false);
+        key = channel.register(selector, 0);
+    }
+
+    private void startTls(final long deadline) throws IOException {
+        engine = sslContext.createSSLEngine(peerHost, getPort());
+        engine.setUseClientMode(true);
+        if (protocols != null) {
+            engine.setEnabledProtocols(protocols);
+        }
+        if (cipherSuites != null) {
+            engine.setEnabledCipherSuites(cipherSuites);
+        }
+
+        netOut = bufferPool.acquire();
+        handshake(deadline);
+        connected = true;
+    }
+
+    private void handshake(final long deadline) throws IOException {
+        final ByteBuffer netIn = bufferPool.acquire();
+        final ByteBuffer appIn =
+            ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+
+        try {
+            engine.beginHandshake();
+            SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+
+            while (status != SSLEngineResult.HandshakeStatus.FINISHED
+                && status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+
+                switch (status) {
+                    case NEED_WRAP:
+                        netOut.clear();
+                        status = checkResult(engine.wrap(EMPTY, netOut)).getHandshakeStatus();
+                        netOut.flip();
+                        flush(deadline);
+                        break;
+                    case NEED_UNWRAP:
+                        status = unwrap(netIn, appIn, deadline);
+                        break;
+                    case NEED_TASK:
+                        runDelegatedTasks();
+                        status = engine.getHandshakeStatus();
+                        break;
+                    default:
+                        throw new SSLException("Unexpected handshake status: " + status);
+                }
+            }
+        } finally {
+            bufferPool.release(netIn);
+        }
+    }
+
+    private SSLEngineResult.HandshakeStatus unwrap(final ByteBuffer netIn, final ByteBuffer appIn,
+                                                   final long deadline) throws IOException {
+        netIn.flip();
+        final SSLEngineResult result = engine.unwrap(netIn, appIn);
+        netIn.compact();
+
+        // The server isn't expected to send application data
+        appIn.clear();
+
+        if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+            read(netIn, deadline);
+        } else {
+            checkResult(result);
+        }
+
+        return result.getHandshakeStatus();
+    }
+
+    private void runDelegatedTasks() {
+        Runnable task = engine.getDelegatedTask();
+        while (task != null) {
+            task.run();
+            task = engine.getDelegatedTask();
+        }
+    }
+
+    private void read(final ByteBuffer netIn, final long deadline) throws IOException {
+        while (true) {
+            final int bytes = channel.read(netIn);
+            if (bytes < 0) {
+                throw new EOFException("Connection closed by server during TLS handshake");
+            }
+            if (bytes > 0) {
+                return;
+            }
+            await(SelectionKey.OP_READ, deadline);
+        }
+    }
+
+    private static SSLEngineResult checkResult(final SSLEngineResult result) throws SSLException {
+        if (result.getStatus() != SSLEngineResult.Status.OK) {
+            throw new SSLException("Unexpected TLS engine status: " + result.getStatus());
+        }
+        return result;
+    }
+
+    @Override
+    protected synchronized void writeMessage(final byte[] messageToSend) throws IOException {
+        wrapAndFlush(ByteBuffer.wrap(messageToSend));
+    }
+
+    @Override
+    protected synchronized void transfer(final FileChannel fileChannel, final long position,
+                                         final long count) throws IOException {
+
+        final ByteBuffer appOut = bufferPool.acquire();
+        try {
+            // Multiple of the record size - every record but the last one is filled completely
+            final int chunkSize = appOut.capacity() / MAX_RECORD_PLAINTEXT * MAX_RECORD_PLAINTEXT;
+
+            long transferred = 0;
+            while (transferred < count) {
+                appOut.clear();
+                appOut.limit((int) Math.min(chunkSize, count - transferred));
+
+                while (appOut.hasRemaining()) {
+                    if (fileChannel.read(appOut, position + transferred + appOut.position())
+                        <= 0) {
+                        throw new IOException("Spool data truncated at position "
+                            + (position + transferred + appOut.position()));
+                    }
+                }
+
+                appOut.flip();
+                transferred += appOut.remaining();
+                wrapAndFlush(appOut);
+                writeProgressed();
+            }
+        } finally {
+            bufferPool.release(appOut);
+        }
+    }
+
+    /**
+     * Encrypts the given data into as few TLS records as possible and writes them in bulk.
+     */
+    private void wrapAndFlush(final ByteBuffer src) throws IOException {
+        if (!connected) {
+            throw new IOException("Connection closed");
+        }
+
+        final int packetSize = engine.getSession().getPacketBufferSize();
+
+        while (src.hasRemaining()) {
+            netOut.clear();
+
+            // Fill the network buffer with as many records as possible
+            do {
+                checkResult(engine.wrap(src, netOut));
+            } while (src.hasRemaining() && netOut.remaining() >= packetSize);
+
+            netOut.flip();
+            flush(0);
+        }
+    }
+
+    private void flush(final long deadline) throws IOException {
+        while (netOut.hasRemaining()) {
+            if (channel.write(netOut) == 0) {
+                await(SelectionKey.OP_WRITE, deadline);
+            }
+        }
+    }
+
+    /**
+     * Waits until the channel is ready for the given operation.
+     *
+     * @param ops the operation to wait for.
+     * @param deadline the deadline ({@link System#nanoTime()}) or 0 to wait infinitely.
+     */
+    private void await(final int ops, final long deadline) throws IOException {
+        key.interestOps(ops);
+
+        long timeout = 0;
+        if (deadline != 0) {
+            timeout = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (timeout <= 0) {
+                throw new SocketTimeoutException("Timeout while connecting to " + peerHost);
+            }
+        }
+
+        selector.select(timeout);
+        selector.selectedKeys().clear();
+
+        if (!channel.isOpen()) {
+            throw new IOException("Connection closed");
+        }
+    }
+
+    @Override
+    protected void disconnect() {
+        connected = false;
+
+        // Closing the channel aborts a pending write of another thread
+        closeQuietly();
+        final Selector currentSelector = selector;
+        if (currentSelector != null) {
+            currentSelector.wakeup();
+        }
+
+        // Wait for the pending write to complete, before the buffers are released
+        synchronized (this) {
+            bufferPool.release(netOut);
+            netOut = null;
+
+            if (selector != null) {
+                try {
+                    selector.close();
+                } catch (final IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        final SocketChannel socketChannel = channel;
+        if (socketChannel != null) {
+            try {
+                socketChannel.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+import de.siegmar.logbackgelf.pool.PooledObjectFactory;
+
+/**
+ * Stream connection to a Unix domain socket (e.g. of a local GELF sidecar). The Graylog
+ * hostname is neither resolved nor connected to - the connection always goes to the
+ * configured socket file.
+ */
+public class UnixSocketConnection extends AbstractTcpConnection {
+
+    private static final long TRANSFER_CHUNK_SIZE = 64 * 1024;
+
+    private final String socketPath;
+
+    private volatile SocketChannel channel;
+
+    UnixSocketConnection(final String socketPath, final int connectTimeout) {
+        // No address resolver - the connection isn't made to an address of a hostname
+        super(null, 0, connectTimeout);
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Creates a factory for connections to the given socket file.
+     */
+    static PooledObjectFactory<AbstractTcpConnection> factory(final String socketPath,
+                                                              final int connectTimeout) {
+
+        return new PooledObjectFactory<AbstractTcpConnection>() {
+            @Override
+            public AbstractTcpConnection newInstance() {
+                return new UnixSocketConnection(socketPath, connectTimeout);
+            }
+        };
+    }
+
+    @Override
+    protected boolean isConnected() {
+        return channel != null;
+    }
+
+    @Override
+    InetAddress connectCandidates() throws IOException {
+        channel = UnixSockets.connect(socketPath);
+        return null;
+    }
+
+    @Override
+    protected void connect(final InetAddress ip) throws IOException {
+        channel = UnixSockets.connect(socketPath);
+    }
+
+    @Override
+    protected void writeMessage(final byte[] messageToSend) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(messageToSend);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    protected void transfer(final FileChannel source, final long position, final long count)
+        throws IOException {
+
+        long transferred = 0;
+        while (transferred < count) {
+            // Limited chunks - each chunk written restarts the write timeout
+            final long bytes = source.transferTo(position + transferred,
+                Math.min(TRANSFER_CHUNK_SIZE, count - transferred), channel);
+            if (bytes <= 0) {
+                throw new IOException("Spool data truncated at position "
+                    + (position + transferred));
+            }
+            transferred += bytes;
+            writeProgressed();
+        }
+    }
+
+    @Override
+    protected void disconnect() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+        }
+    }
+
+}
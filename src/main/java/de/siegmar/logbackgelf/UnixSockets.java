@@ -0,0 +1,49 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Access to Unix domain sockets. This implementation is used on Java versions prior to 16 -
+ * the multi-release layer in {@code META-INF/versions/16} replaces it.
+ */
+final class UnixSockets {
+
+    private UnixSockets() {
+    }
+
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Opens a blocking channel connected to the given socket file.
+     *
+     * @param path the path of the socket file.
+     * @return the connected channel.
+     * @throws IOException if the channel couldn't be opened or connected.
+     */
+    static SocketChannel connect(final String path) throws IOException {
+        throw new IOException("Unix domain sockets require Java 16 or newer");
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.siegmar.logbackgelf.pool.PooledObjectFactory;
+
+/**
+ * Periodically checks all connections for writes that made no progress within the write
+ * timeout and aborts them. Blocking socket writes can't time out by themselves - without this,
+ * a server that stops reading blocks the logging threads forever.
+ */
+final class WriteTimeoutWatchdog implements Runnable {
+
+    private static final long MIN_CHECK_INTERVAL = 10;
+    private static final long MAX_CHECK_INTERVAL = 1_000;
+    private static final int CHECKS_PER_TIMEOUT = 4;
+
+    private final Set<AbstractTcpConnection> connections =
+        Collections.newSetFromMap(new ConcurrentHashMap<AbstractTcpConnection, Boolean>());
+
+    private final long writeTimeout;
+
+    private ScheduledFuture<?> task;
+
+    private WriteTimeoutWatchdog(final long writeTimeout) {
+        this.writeTimeout = TimeUnit.MILLISECONDS.toNanos(writeTimeout);
+    }
+
+    /**
+     * Creates a new watchdog and schedules its periodic check.
+     *
+     * @param scheduler the scheduler used for the periodic check.
+     * @param writeTimeout the write timeout in milliseconds.
+     * @return the scheduled watchdog.
+     */
+    static WriteTimeoutWatchdog schedule(final ScheduledExecutorService scheduler,
+                                         final long writeTimeout) {
+        final WriteTimeoutWatchdog watchdog = new WriteTimeoutWatchdog(writeTimeout);
+
+        final long interval = Math.max(MIN_CHECK_INTERVAL,
+            Math.min(MAX_CHECK_INTERVAL, writeTimeout / CHECKS_PER_TIMEOUT));
+        watchdog.task = scheduler.scheduleWithFixedDelay(watchdog, interval, interval,
+            TimeUnit.MILLISECONDS);
+
+        return watchdog;
+    }
+
+    /**
+     * Decorates the given factory, so that all connections it creates are watched.
+     */
+    PooledObjectFactory<AbstractTcpConnection> watch(
+        final PooledObjectFactory<AbstractTcpConnection> connectionFactory) {
+
+        return new PooledObjectFactory<AbstractTcpConnection>() {
+            @Override
+            public AbstractTcpConnection newInstance() {
+                final AbstractTcpConnection connection = connectionFactory.newInstance();
+                connections.add(connection);
+                return connection;
+            }
+        };
+    }
+
+    @Override
+    public void run() {
+        final long now = System.nanoTime();
+        for (final AbstractTcpConnection connection : connections) {
+            if (connection.isClosed()) {
+                connections.remove(connection);
+            } else if (connection.isWriteTimedOut(now, writeTimeout)) {
+                connection.abortWrite();
+            }
+        }
+    }
+
+    void cancel() {
+        task.cancel(false);
+        connections.clear();
+    }
+
+}
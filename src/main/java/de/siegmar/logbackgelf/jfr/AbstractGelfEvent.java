@@ -0,0 +1,50 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.jfr;
+
+/**
+ * Flight Recorder event that does nothing. The events of this package extend it on Java versions
+ * prior to 11 - the multi-release layer in {@code META-INF/versions/11} replaces them by
+ * {@code jdk.jfr.Event} subclasses with the same methods.
+ * <p>
+ * Event fields have to be set only if {@link #shouldCommit()} (or {@link #isEnabled()}) returns
+ * {@code true} - as this always returns {@code false} here (and for disabled events), the JIT
+ * removes the event entirely.
+ */
+public abstract class AbstractGelfEvent {
+
+    public final void begin() {
+    }
+
+    public final void end() {
+    }
+
+    public final void commit() {
+    }
+
+    public final boolean isEnabled() {
+        return false;
+    }
+
+    public final boolean shouldCommit() {
+        return false;
+    }
+
+}
@@ -0,0 +1,353 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import de.siegmar.logbackgelf.pool.SimpleObjectPool;
+
+/**
+ * Counters of a GELF appender, exposed as MBean
+ * ({@code de.siegmar.logbackgelf:type=GelfAppender,context=...,name=...}).
+ * <p>
+ * All counters are striped, so concurrent logging threads don't contend on them. If disabled,
+ * nothing is counted.
+ */
+public class GelfAppenderMetrics implements GelfAppenderMetricsMBean {
+
+    private static final String DOMAIN = "de.siegmar.logbackgelf";
+
+    private static final double P50 = 50;
+    private static final double P99 = 99;
+    private static final double P999 = 99.9;
+
+    private final StripedCounter events = new StripedCounter();
+    private final StripedCounter bytesBeforeCompression = new StripedCounter();
+    private final StripedCounter bytesAfterCompression = new StripedCounter();
+    private final StripedCounter udpChunks = new StripedCounter();
+    private final StripedCounter sendErrors = new StripedCounter();
+    private final StripedCounter retries = new StripedCounter();
+    private final StripedCounter drops = new StripedCounter();
+    private final StripedCounter connects = new StripedCounter();
+
+    private final LatencyHistogram layoutTime = new LatencyHistogram();
+    private final LatencyHistogram compressionTime = new LatencyHistogram();
+    private final LatencyHistogram sendTime = new LatencyHistogram();
+
+    private final List<SimpleObjectPool<?>> pools = new CopyOnWriteArrayList<>();
+    private final AtomicInteger initialConnections = new AtomicInteger();
+
+    private volatile boolean enabled = true;
+
+    private ObjectName objectName;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void event() {
+        if (enabled) {
+            events.increment();
+        }
+    }
+
+    /**
+     * Counts the size of a message before and after transport encoding (compression).
+     */
+    public void encoded(final int sizeBefore, final int sizeAfter) {
+        if (enabled) {
+            bytesBeforeCompression.add(sizeBefore);
+            bytesAfterCompression.add(sizeAfter);
+        }
+    }
+
+    public void udpChunks(final int chunks) {
+        if (enabled) {
+            udpChunks.add(chunks);
+        }
+    }
+
+    public void sendError() {
+        if (enabled) {
+            sendErrors.increment();
+        }
+    }
+
+    public void retry() {
+        if (enabled) {
+            retries.increment();
+        }
+    }
+
+    public void dropped() {
+        if (enabled) {
+            drops.increment();
+        }
+    }
+
+    public void connected() {
+        if (enabled) {
+            connects.increment();
+        }
+    }
+
+    /**
+     * Returns the start time for the latency recording methods.
+     *
+     * @return the current {@link System#nanoTime()} or 0 if disabled.
+     */
+    public long startTime() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time spent in the layout since the given start time.
+     *
+     * @param startTime the time returned by {@link #startTime()}.
+     */
+    public void layoutTime(final long startTime) {
+        if (enabled) {
+            layoutTime.record(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Records the time spent compressing since the given start time.
+     *
+     * @param startTime the time returned by {@link #startTime()}.
+     */
+    public void compressionTime(final long startTime) {
+        if (enabled) {
+            compressionTime.record(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Records the time spent sending since the given start time.
+     *
+     * @param startTime the time returned by {@link #startTime()}.
+     */
+    public void sendTime(final long startTime) {
+        if (enabled) {
+            sendTime.record(System.nanoTime() - startTime);
+        }
+    }
+
+    public LatencyHistogram getLayoutTime() {
+        return layoutTime;
+    }
+
+    public LatencyHistogram getCompressionTime() {
+        return compressionTime;
+    }
+
+    public LatencyHistogram getSendTime() {
+        return sendTime;
+    }
+
+    /**
+     * Adds a connection pool to the borrow wait statistics.
+     *
+     * @param pool the pool.
+     * @param initialSize the number of connections initially opened by the pool.
+     */
+    public void addPool(final SimpleObjectPool<?> pool, final int initialSize) {
+        pools.add(pool);
+        initialConnections.addAndGet(initialSize);
+    }
+
+    @Override
+    public long getEvents() {
+        return events.sum();
+    }
+
+    @Override
+    public long getBytesBeforeCompression() {
+        return bytesBeforeCompression.sum();
+    }
+
+    @Override
+    public long getBytesAfterCompression() {
+        return bytesAfterCompression.sum();
+    }
+
+    @Override
+    public long getUdpChunks() {
+        return udpChunks.sum();
+    }
+
+    @Override
+    public long getSendErrors() {
+        return sendErrors.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getDrops() {
+        return drops.sum();
+    }
+
+    @Override
+    public long getPoolBorrowWaits() {
+        long waits = 0;
+        for (final SimpleObjectPool<?> pool : pools) {
+            waits += pool.getStatistics().getWaitCount();
+        }
+        return waits;
+    }
+
+    @Override
+    public long getPoolBorrowWaitTime() {
+        long waitTime = 0;
+        for (final SimpleObjectPool<?> pool : pools) {
+            waitTime += pool.getStatistics().getTotalWaitTime();
+        }
+        return waitTime;
+    }
+
+    @Override
+    public long getConnects() {
+        return connects.sum();
+    }
+
+    @Override
+    public long getReconnects() {
+        return Math.max(0, connects.sum() - initialConnections.get());
+    }
+
+    @Override
+    public long getLayoutTimeP50() {
+        return layoutTime.snapshot().getValueAtPercentile(P50);
+    }
+
+    @Override
+    public long getLayoutTimeP99() {
+        return layoutTime.snapshot().getValueAtPercentile(P99);
+    }
+
+    @Override
+    public long getLayoutTimeP999() {
+        return layoutTime.snapshot().getValueAtPercentile(P999);
+    }
+
+    @Override
+    public long getLayoutTimeMax() {
+        return layoutTime.snapshot().getMax();
+    }
+
+    @Override
+    public long getCompressionTimeP50() {
+        return compressionTime.snapshot().getValueAtPercentile(P50);
+    }
+
+    @Override
+    public long getCompressionTimeP99() {
+        return compressionTime.snapshot().getValueAtPercentile(P99);
+    }
+
+    @Override
+    public long getCompressionTimeP999() {
+        return compressionTime.snapshot().getValueAtPercentile(P999);
+    }
+
+    @Override
+    public long getCompressionTimeMax() {
+        return compressionTime.snapshot().getMax();
+    }
+
+    @Override
+    public long getSendTimeP50() {
+        return sendTime.snapshot().getValueAtPercentile(P50);
+    }
+
+    @Override
+    public long getSendTimeP99() {
+        return sendTime.snapshot().getValueAtPercentile(P99);
+    }
+
+    @Override
+    public long getSendTimeP999() {
+        return sendTime.snapshot().getValueAtPercentile(P999);
+    }
+
+    @Override
+    public long getSendTimeMax() {
+        return sendTime.snapshot().getMax();
+    }
+
+    @Override
+    public void resetLatencies() {
+        layoutTime.reset();
+        compressionTime.reset();
+        sendTime.reset();
+    }
+
+    /**
+     * Registers this instance at the platform MBean server.
+     *
+     * @param contextName the name of the logger context.
+     * @param appenderName the name of the appender.
+     * @throws JMException if the MBean couldn't be registered (e.g. name already in use).
+     */
+    public synchronized void register(final String contextName, final String appenderName)
+        throws JMException {
+
+        final ObjectName name = new ObjectName(DOMAIN + ":type=GelfAppender,context="
+            + ObjectName.quote(contextName) + ",name=" + ObjectName.quote(appenderName));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        objectName = name;
+    }
+
+    /**
+     * Unregisters this instance (if registered) and removes all connection pools.
+     */
+    public synchronized void unregister() {
+        pools.clear();
+        initialConnections.set(0);
+
+        if (objectName == null) {
+            return;
+        }
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (final JMException e) {
+            // Unregistered by someone else
+        }
+        objectName = null;
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.metrics;
+
+/**
+ * JMX interface of {@link GelfAppenderMetrics}.
+ */
+public interface GelfAppenderMetricsMBean {
+
+    /**
+     * Number of events passed to the appender.
+     */
+    long getEvents();
+
+    /**
+     * Number of bytes of all GELF messages before transport encoding (compression).
+     */
+    long getBytesBeforeCompression();
+
+    /**
+     * Number of bytes of all GELF messages after transport encoding (compression).
+     */
+    long getBytesAfterCompression();
+
+    /**
+     * Number of UDP chunks sent.
+     */
+    long getUdpChunks();
+
+    /**
+     * Number of failed send attempts.
+     */
+    long getSendErrors();
+
+    /**
+     * Number of send retries.
+     */
+    long getRetries();
+
+    /**
+     * Number of messages dropped (neither sent, spooled nor taken by a fallback appender).
+     */
+    long getDrops();
+
+    /**
+     * Number of times a connection couldn't be borrowed from the pool without waiting.
+     */
+    long getPoolBorrowWaits();
+
+    /**
+     * Total time (in milliseconds) waited to borrow a connection from the pool.
+     */
+    long getPoolBorrowWaitTime();
+
+    /**
+     * Number of connections established.
+     */
+    long getConnects();
+
+    /**
+     * Number of connections established beyond the initial ones (replacements after errors,
+     * reconnect intervals and pool growth).
+     */
+    long getReconnects();
+
+    /**
+     * Median of the time (in nanoseconds) spent in the layout.
+     */
+    long getLayoutTimeP50();
+
+    /**
+     * 99th percentile of the time (in nanoseconds) spent in the layout.
+     */
+    long getLayoutTimeP99();
+
+    /**
+     * 99.9th percentile of the time (in nanoseconds) spent in the layout.
+     */
+    long getLayoutTimeP999();
+
+    /**
+     * Maximum of the time (in nanoseconds) spent in the layout.
+     */
+    long getLayoutTimeMax();
+
+    /**
+     * Median of the time (in nanoseconds) spent compressing.
+     */
+    long getCompressionTimeP50();
+
+    /**
+     * 99th percentile of the time (in nanoseconds) spent compressing.
+     */
+    long getCompressionTimeP99();
+
+    /**
+     * 99.9th percentile of the time (in nanoseconds) spent compressing.
+     */
+    long getCompressionTimeP999();
+
+    /**
+     * Maximum of the time (in nanoseconds) spent compressing.
+     */
+    long getCompressionTimeMax();
+
+    /**
+     * Median of the time (in nanoseconds) spent sending (including pool waits).
+     */
+    long getSendTimeP50();
+
+    /**
+     * 99th percentile of the time (in nanoseconds) spent sending (including pool waits).
+     */
+    long getSendTimeP99();
+
+    /**
+     * 99.9th percentile of the time (in nanoseconds) spent sending (including pool waits).
+     */
+    long getSendTimeP999();
+
+    /**
+     * Maximum of the time (in nanoseconds) spent sending (including pool waits).
+     */
+    long getSendTimeMax();
+
+    /**
+     * Resets the latency histograms.
+     */
+    void resetLatencies();
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.metrics;
+
+/**
+ * Immutable snapshot of a {@link LatencyHistogram}. Values are reported as the upper bound of
+ * their bucket - so they are never underestimated.
+ */
+public final class LatencySnapshot {
+
+    private static final double HUNDRED_PERCENT = 100;
+
+    private final long[] counts;
+    private final long count;
+
+    LatencySnapshot(final long[] counts) {
+        this.counts = counts;
+
+        long sum = 0;
+        for (final long bucketCount : counts) {
+            sum += bucketCount;
+        }
+        count = sum;
+    }
+
+    /**
+     * Number of recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the value (in nanoseconds) the given percentage of all recorded values is lower
+     * than or equal to.
+     *
+     * @param percentile the percentile, e.g. {@code 99.9}.
+     * @return the value or 0 if no value has been recorded.
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(count * percentile / HUNDRED_PERCENT));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.upperBound(i);
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Returns the highest recorded value (in nanoseconds).
+     *
+     * @return the value or 0 if no value has been recorded.
+     */
+    public long getMax() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] > 0) {
+                return LatencyHistogram.upperBound(i);
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter striped across multiple cells, so concurrent threads (usually) update different
+ * cache lines. Updates are cheap and contention free, reading the sum is more expensive.
+ * <p>
+ * Java 7 compatible replacement of {@code java.util.concurrent.atomic.LongAdder}.
+ */
+final class StripedCounter {
+
+    /** Distance (in longs) between two cells - 128 bytes, two cache lines. */
+    private static final int PADDING = 16;
+
+    private static final int MAX_STRIPES = 64;
+
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+    private static final int HASH_SHIFT = 16;
+
+    private static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    private static int stripes(final int processors) {
+        // Power of two - at least twice the number of processors
+        return Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, processors * 2 - 1)) * 2);
+    }
+
+    void increment() {
+        add(1);
+    }
+
+    void add(final long value) {
+        cells.getAndAdd(cell(), value);
+    }
+
+    private static int cell() {
+        // Spread consecutive thread ids across the stripes
+        final int hash = (int) Thread.currentThread().getId() * GOLDEN_RATIO;
+        return (hash >>> HASH_SHIFT & STRIPES - 1) * PADDING;
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+}
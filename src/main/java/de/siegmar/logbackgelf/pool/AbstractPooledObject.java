@@ -19,14 +19,83 @@
 
 package de.siegmar.logbackgelf.pool;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 public abstract class AbstractPooledObject {
 
+    static final int STATE_IDLE = 0;
+    static final int STATE_IN_USE = 1;
+    static final int STATE_REMOVED = 2;
+
+    private static final AtomicIntegerFieldUpdater<AbstractPooledObject> STATE_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(AbstractPooledObject.class, "state");
+
     private final long createdAt = System.currentTimeMillis();
 
+    private volatile int state = STATE_IN_USE;
+
+    private volatile boolean evicted;
+
+    private long maxLifeTime = -1;
+
+    private volatile long idleSince = System.nanoTime();
+
     final long lifeTime() {
         return System.currentTimeMillis() - createdAt;
     }
 
+    /**
+     * Maximum life time (in milliseconds) of this very object - {@code -1} for unlimited.
+     */
+    final long getMaxLifeTime() {
+        return maxLifeTime;
+    }
+
+    final void setMaxLifeTime(final long maxLifeTime) {
+        this.maxLifeTime = maxLifeTime;
+    }
+
+    /**
+     * Time (in nanoseconds) since this object has been returned to the pool the last time.
+     */
+    final long idleTime() {
+        return System.nanoTime() - idleSince;
+    }
+
+    final void markIdle() {
+        idleSince = System.nanoTime();
+    }
+
+    final int getState() {
+        return state;
+    }
+
+    final void setState(final int newState) {
+        state = newState;
+    }
+
+    final boolean compareAndSetState(final int expect, final int update) {
+        return STATE_UPDATER.compareAndSet(this, expect, update);
+    }
+
+    final boolean isEvicted() {
+        return evicted;
+    }
+
+    final void evict() {
+        evicted = true;
+    }
+
+    /**
+     * Prepares this object for use (e.g. establishes a connection). If the pool is started
+     * with background executors, this is called in background before the object is
+     * handed out - except for the initial objects, which may already be in use concurrently.
+     *
+     * @throws Exception if the object couldn't be prepared. The object is pooled nevertheless.
+     */
+    protected void open() throws Exception {
+    }
+
     protected void close() {
     }
 
@@ -0,0 +1,98 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.pool;
+
+/**
+ * Snapshot of the size and the borrow wait times of a {@link SimpleObjectPool}.
+ */
+public final class PoolStatistics {
+
+    private final int size;
+    private final int idle;
+    private final int waiting;
+    private final long waitCount;
+    private final long totalWaitTime;
+    private final long maxWaitTime;
+
+    PoolStatistics(final int size, final int idle, final int waiting, final long waitCount,
+                   final long totalWaitTime, final long maxWaitTime) {
+        this.size = size;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.waitCount = waitCount;
+        this.totalWaitTime = totalWaitTime;
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * Current number of pooled objects.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Number of pooled objects currently not in use.
+     */
+    public int getIdle() {
+        return idle;
+    }
+
+    /**
+     * Number of threads currently waiting for an object.
+     */
+    public int getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * Number of borrows that had to wait, because no object was idle.
+     */
+    public long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * Total time (in milliseconds) threads waited for an object.
+     */
+    public long getTotalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * Longest time (in milliseconds) a thread waited for an object.
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStatistics{"
+            + "size=" + size
+            + ", idle=" + idle
+            + ", waiting=" + waiting
+            + ", waitCount=" + waitCount
+            + ", totalWaitTime=" + totalWaitTime
+            + ", maxWaitTime=" + maxWaitTime
+            + '}';
+    }
+
+}
@@ -19,47 +19,420 @@
 
 package de.siegmar.logbackgelf.pool;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+import de.siegmar.logbackgelf.jfr.PoolWaitEvent;
+
+/**
+ * Object pool optimized for low contention.
+ * <p>
+ * A thread first tries to re-acquire the object it used last (thread affinity). If that object
+ * is in use by another thread, all pooled objects are scanned and the first idle one is
+ * acquired by a compare-and-set operation. Only if no object is idle, the thread waits for an
+ * object being handed off by a returning thread. Neither borrowing nor returning an object
+ * requires a lock as long as idle objects are available.
+ * <p>
+ * If started via {@link #start(ScheduledExecutorService)}, objects are opened and
+ * replaced (when expired or invalidated) in background. A replacement is opened before the
+ * object it replaces is retired, so borrowers don't have to wait for objects being opened.
+ * Otherwise, expired and invalidated objects are replaced by the borrowing thread. If the
+ * background executor rejects a task, the affected object is opened on first use instead.
+ * <p>
+ * The life time of each object is shortened by a random jitter, so objects created at the same
+ * time (e.g. at startup) don't expire at the same time. Additionally, the rotation of expired
+ * objects can be limited to one object per configured pause. Replacements of invalidated
+ * objects are not limited.
+ * <p>
+ * If the maximum size is larger than the minimum size, the pool grows by one object whenever a
+ * thread didn't get an object within the grow wait time, or whenever more threads are waiting
+ * than objects exist. Objects that have been idle for longer than the idle timeout are removed
+ * until the minimum size is reached again (only if started).
+ */
+@SuppressWarnings("checkstyle:classdataabstractioncoupling")
 public class SimpleObjectPool<T extends AbstractPooledObject> {
 
     private static final int MILLIS_PER_SECOND = 1000;
+    private static final int HANDOFF_SPIN_MASK = 0xff;
+    private static final long HANDOFF_PARK_NANOS = 10_000;
+    private static final long MAX_MAINTENANCE_INTERVAL = 1_000;
+    private static final long MIN_MAINTENANCE_INTERVAL = 10;
+    private static final int MAINTENANCE_INTERVALS_PER_LIFETIME = 4;
+    private static final int DEFAULT_GROW_WAIT_TIME = 100;
+    private static final int DEFAULT_IDLE_TIMEOUT = 60_000;
+    private static final String ACQUIRE_FAILED = "Couldn't acquire connection from pool";
 
-    private final BlockingQueue<T> pool = new LinkedBlockingQueue<>();
-    private final Set<T> allObjects = new HashSet<>();
+    private final List<T> allObjects = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<T> lastUsed = new ThreadLocal<>();
+    private final SynchronousQueue<T> handoffQueue = new SynchronousQueue<>(true);
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicBoolean maintenanceRunning = new AtomicBoolean();
+    private final AtomicLong lastRotation = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong longestWaitTime = new AtomicLong();
 
     private final PooledObjectFactory<T> objectFactory;
+    private final int minSize;
+    private final int maxSize;
     private final int maxWaitTime;
     private final int maxLifeTime;
+    private final int maxLifeTimeJitter;
+    private final long minRotationPause;
+    private long growWaitTime = TimeUnit.MILLISECONDS.toNanos(DEFAULT_GROW_WAIT_TIME);
+    private long idleTimeout = TimeUnit.MILLISECONDS.toNanos(DEFAULT_IDLE_TIMEOUT);
+
+    private volatile Executor executor;
+    private ExecutorService ownExecutor;
+    private volatile boolean closed;
+    private ScheduledFuture<?> maintenanceTask;
 
     public SimpleObjectPool(final PooledObjectFactory<T> objectFactory,
                             final int poolSize, final int maxWaitTime,
                             final int maxLifeTime) {
+        this(objectFactory, poolSize, maxWaitTime, maxLifeTime, 0, 0);
+    }
+
+    /**
+     * Creates a new pool.
+     *
+     * @param objectFactory the factory used to create new objects.
+     * @param poolSize the number of pooled objects (minimum 1).
+     * @param maxWaitTime the maximum time (in milliseconds) to wait for an object to become
+     *     available. A value of -1 disables the timeout.
+     * @param maxLifeTime the maximum life time (in seconds) of an object. A value of -1
+     *     disables the expiration.
+     * @param maxLifeTimeJitter the maximum time (in seconds) the life time of each object is
+     *     randomly shortened by. A value of 0 disables the jitter.
+     * @param minRotationPause the minimum time (in milliseconds) between the replacement of
+     *     two expired objects. A value of 0 disables the limit.
+     */
+    public SimpleObjectPool(final PooledObjectFactory<T> objectFactory,
+                            final int poolSize, final int maxWaitTime,
+                            final int maxLifeTime, final int maxLifeTimeJitter,
+                            final int minRotationPause) {
+        this(objectFactory, poolSize, poolSize, maxWaitTime, maxLifeTime, maxLifeTimeJitter,
+            minRotationPause);
+    }
+
+    /**
+     * Creates a new pool that grows and shrinks between the given sizes.
+     *
+     * @param objectFactory the factory used to create new objects.
+     * @param minSize the minimum number of pooled objects (minimum 1).
+     * @param maxSize the maximum number of pooled objects (minimum minSize).
+     * @param maxWaitTime the maximum time (in milliseconds) to wait for an object to become
+     *     available. A value of -1 disables the timeout.
+     * @param maxLifeTime the maximum life time (in seconds) of an object. A value of -1
+     *     disables the expiration.
+     * @param maxLifeTimeJitter the maximum time (in seconds) the life time of each object is
+     *     randomly shortened by. A value of 0 disables the jitter.
+     * @param minRotationPause the minimum time (in milliseconds) between the replacement of
+     *     two expired objects. A value of 0 disables the limit.
+     */
+    public SimpleObjectPool(final PooledObjectFactory<T> objectFactory,
+                            final int minSize, final int maxSize, final int maxWaitTime,
+                            final int maxLifeTime, final int maxLifeTimeJitter,
+                            final int minRotationPause) {
 
-        if (poolSize < 1) {
+        if (minSize < 1) {
             throw new IllegalArgumentException("poolSize must be > 0");
         }
 
+        if (maxSize < minSize) {
+            throw new IllegalArgumentException("maxPoolSize must be >= poolSize");
+        }
+
+        if (maxLifeTimeJitter < 0 || maxLifeTime >= 0 && maxLifeTimeJitter > maxLifeTime) {
+            throw new IllegalArgumentException("maxLifeTimeJitter must be >= 0 and <= "
+                + "maxLifeTime");
+        }
+
         this.objectFactory = objectFactory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
         this.maxWaitTime = maxWaitTime;
         this.maxLifeTime = maxLifeTime < 0 ? maxLifeTime : maxLifeTime * MILLIS_PER_SECOND;
+        this.maxLifeTimeJitter = maxLifeTimeJitter * MILLIS_PER_SECOND;
+        this.minRotationPause = TimeUnit.MILLISECONDS.toNanos(Math.max(0, minRotationPause));
+        lastRotation.set(System.nanoTime() - this.minRotationPause);
 
-        for (int i = 0; i < poolSize; i++) {
-            final T pooledObject = this.objectFactory.newInstance();
-            pool.add(pooledObject);
+        for (int i = 0; i < minSize; i++) {
+            final T pooledObject = newObject();
             allObjects.add(pooledObject);
+            pooledObject.setState(AbstractPooledObject.STATE_IDLE);
+        }
+        size.set(minSize);
+    }
+
+    /**
+     * Sets the time a thread waits for an object before the pool grows. Has to be called
+     * before the pool is used.
+     *
+     * @param growWaitTime the time (in milliseconds). Default: 100 milliseconds.
+     */
+    public void setGrowWaitTime(final int growWaitTime) {
+        this.growWaitTime = TimeUnit.MILLISECONDS.toNanos(growWaitTime);
+    }
+
+    /**
+     * Sets the time after which idle objects exceeding the minimum size are removed. Has to be
+     * called before the pool is started.
+     *
+     * @param idleTimeout the time (in milliseconds). Default: 60,000 milliseconds.
+     */
+    public void setIdleTimeout(final int idleTimeout) {
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+    }
+
+    private boolean isElastic() {
+        return maxSize > minSize;
+    }
+
+    /**
+     * Opens all objects in background and starts replacing expired objects in background -
+     * with own (bounded) threads, as opening an object may block (e.g. for a connect timeout).
+     * The threads are stopped when the pool is closed.
+     *
+     * @param scheduler the scheduler used to periodically check for expired objects.
+     */
+    public void start(final ScheduledExecutorService scheduler) {
+        ownExecutor = BackgroundExecutor.create("gelf-pool", maxSize);
+        start(scheduler, ownExecutor);
+    }
+
+    /**
+     * Opens all objects in background and starts replacing expired objects in background.
+     *
+     * @param scheduler the scheduler used to periodically check for expired objects.
+     * @param backgroundExecutor the executor used to open new objects.
+     */
+    public void start(final ScheduledExecutorService scheduler,
+                      final Executor backgroundExecutor) {
+
+        this.executor = backgroundExecutor;
+
+        for (final T pooledObject : allObjects) {
+            // If rejected, the object is opened on first use
+            runInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    openObject(pooledObject);
+                }
+            });
+        }
+
+        if (maxLifeTime >= 0 || isElastic()) {
+            final long interval = Math.max(MIN_MAINTENANCE_INTERVAL,
+                Math.min(MAX_MAINTENANCE_INTERVAL, maintenancePeriod()));
+
+            maintenanceTask = scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    scheduleMaintenance();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
         }
     }
 
+    private long maintenancePeriod() {
+        long period = Long.MAX_VALUE;
+        if (maxLifeTime >= 0) {
+            period = maxLifeTime / MAINTENANCE_INTERVALS_PER_LIFETIME;
+        }
+        if (isElastic()) {
+            period = Math.min(period, TimeUnit.NANOSECONDS.toMillis(idleTimeout)
+                / MAINTENANCE_INTERVALS_PER_LIFETIME);
+        }
+        return period;
+    }
+
     @SuppressWarnings("checkstyle:illegalcatch")
+    private static void openObject(final AbstractPooledObject pooledObject) {
+        try {
+            pooledObject.open();
+        } catch (final Exception e) {
+            // The object is used nevertheless - it is invalidated on its first failure
+        }
+    }
+
+    private void scheduleMaintenance() {
+        // Only one maintenance at a time - replacements may take a while to be opened
+        if (maintenanceRunning.compareAndSet(false, true)) {
+            final boolean scheduled = runInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        replaceExpiredObjects();
+                        if (isElastic()) {
+                            removeIdleObjects();
+                        }
+                    } finally {
+                        maintenanceRunning.set(false);
+                    }
+                }
+            });
+
+            if (!scheduled) {
+                // Retried with the next maintenance interval
+                maintenanceRunning.set(false);
+            }
+        }
+    }
+
+    /**
+     * Runs the given task with the background executor.
+     *
+     * @return {@code false} if the task has been rejected (or the pool isn't started).
+     */
+    private boolean runInBackground(final Runnable task) {
+        final Executor backgroundExecutor = executor;
+        if (backgroundExecutor == null) {
+            return false;
+        }
+
+        try {
+            backgroundExecutor.execute(task);
+            return true;
+        } catch (final RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void replaceExpiredObjects() {
+        for (final T pooledObject : allObjects) {
+            if (closed) {
+                return;
+            }
+
+            if (!pooledObject.isEvicted() && needToEvict(pooledObject)) {
+                if (!acquireRotation()) {
+                    // Remaining objects are replaced by one of the next maintenance runs
+                    return;
+                }
+
+                addObject(openNewObject());
+                retire(pooledObject);
+            }
+        }
+    }
+
+    private void removeIdleObjects() {
+        for (final T pooledObject : allObjects) {
+            // Only the maintenance shrinks the pool - the size can't fall below the minimum
+            if (closed || size.get() <= minSize) {
+                return;
+            }
+
+            if (!pooledObject.isEvicted() && pooledObject.idleTime() > idleTimeout
+                && pooledObject.compareAndSetState(AbstractPooledObject.STATE_IDLE,
+                AbstractPooledObject.STATE_REMOVED)) {
+
+                size.decrementAndGet();
+                pooledObject.evict();
+                destroy(pooledObject);
+            }
+        }
+    }
+
+    /**
+     * Checks if the rotation pause has elapsed and starts a new one if so.
+     */
+    private boolean acquireRotation() {
+        if (minRotationPause == 0) {
+            return true;
+        }
+
+        final long now = System.nanoTime();
+        final long last = lastRotation.get();
+        return now - last >= minRotationPause && lastRotation.compareAndSet(last, now);
+    }
+
+    private T newObject() {
+        final T newInstance = objectFactory.newInstance();
+
+        if (maxLifeTime >= 0 && maxLifeTimeJitter > 0) {
+            newInstance.setMaxLifeTime(maxLifeTime
+                - ThreadLocalRandom.current().nextInt(maxLifeTimeJitter + 1));
+        } else {
+            newInstance.setMaxLifeTime(maxLifeTime);
+        }
+
+        return newInstance;
+    }
+
+    private T openNewObject() {
+        final T newInstance = newObject();
+        openObject(newInstance);
+        return newInstance;
+    }
+
+    private void addObject(final T pooledObject) {
+        if (closed) {
+            pooledObject.setState(AbstractPooledObject.STATE_REMOVED);
+            pooledObject.close();
+            return;
+        }
+
+        allObjects.add(pooledObject);
+        pooledObject.setState(AbstractPooledObject.STATE_IDLE);
+        handoff(pooledObject);
+    }
+
+    /**
+     * Removes the given object from the pool. If it is currently in use, it is removed as soon
+     * as it's returned.
+     */
+    private void retire(final T pooledObject) {
+        pooledObject.evict();
+        if (pooledObject.compareAndSetState(AbstractPooledObject.STATE_IDLE,
+            AbstractPooledObject.STATE_REMOVED)) {
+
+            destroy(pooledObject);
+        }
+    }
+
+    private void destroy(final T pooledObject) {
+        allObjects.remove(pooledObject);
+        pooledObject.close();
+    }
+
     public void execute(final PooledObjectConsumer<T> consumer) throws Exception {
+        if (!tryExecute(consumer)) {
+            throw new IllegalStateException(ACQUIRE_FAILED);
+        }
+    }
+
+    /**
+     * Passes a borrowed object to the given consumer - like {@link #execute(PooledObjectConsumer)},
+     * but signals a timeout without creating an exception.
+     *
+     * @param consumer the consumer of the borrowed object.
+     * @return {@code false} if no object could be borrowed within the maximum wait time.
+     * @throws Exception if the consumer failed (the object is invalidated) or the thread has
+     *     been interrupted.
+     */
+    @SuppressWarnings("checkstyle:illegalcatch")
+    public boolean tryExecute(final PooledObjectConsumer<T> consumer) throws Exception {
         T pooledObject = null;
         try {
-            pooledObject = borrowObject();
+            pooledObject = tryBorrowObject();
+            if (pooledObject == null) {
+                return false;
+            }
             consumer.accept(pooledObject);
         } catch (final Exception e) {
             if (pooledObject != null) {
@@ -73,52 +446,318 @@ public class SimpleObjectPool<T extends AbstractPooledObject> {
                 returnObject(pooledObject);
             }
         }
+
+        return true;
     }
 
     public T borrowObject() throws InterruptedException {
-        final T pooledObject;
-        if (maxWaitTime < 0) {
-            pooledObject = pool.take();
-        } else {
-            pooledObject = pool.poll(maxWaitTime, TimeUnit.MILLISECONDS);
+        final T pooledObject = tryBorrowObject();
+        if (pooledObject == null) {
+            throw new IllegalStateException(ACQUIRE_FAILED);
+        }
+        return pooledObject;
+    }
 
-            if (pooledObject == null) {
-                throw new IllegalStateException("Couldn't acquire connection from pool");
+    /**
+     * Borrows an object - like {@link #borrowObject()}, but signals a timeout without creating
+     * an exception.
+     *
+     * @return the borrowed object or {@code null} if no object became available within the
+     *     maximum wait time.
+     * @throws InterruptedException if the thread has been interrupted while waiting.
+     */
+    public T tryBorrowObject() throws InterruptedException {
+        // Fast path: the object this thread used last
+        final T lastUsedObject = lastUsed.get();
+        if (lastUsedObject != null && reserve(lastUsedObject)) {
+            return activate(lastUsedObject);
+        }
+
+        // Returning threads hand off their object as long as any thread is waiting.
+        // Register before scanning, to not miss objects returned during the scan.
+        waiters.incrementAndGet();
+        try {
+            final T idleObject = steal();
+            if (idleObject != null) {
+                return activate(idleObject);
+            }
+
+            final PoolWaitEvent waitEvent = new PoolWaitEvent();
+            waitEvent.begin();
+            if (waitEvent.isEnabled()) {
+                waitEvent.setPoolSize(size.get());
+            }
+
+            final long waitStart = System.nanoTime();
+            try {
+                final T pooledObject = awaitObject(waitStart);
+                return pooledObject != null ? activate(pooledObject) : null;
+            } finally {
+                recordWait(System.nanoTime() - waitStart);
+                if (waitEvent.shouldCommit()) {
+                    waitEvent.commit();
+                }
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    private T awaitObject(final long waitStart) throws InterruptedException {
+        if (size.get() < maxSize) {
+            // Grow at once, if more threads are waiting than objects exist
+            final T pooledObject = waiters.get() > size.get() ? null : pollBeforeGrow(waitStart);
+            if (pooledObject != null) {
+                return pooledObject;
+            }
+
+            final T newObject = grow();
+            if (newObject != null) {
+                return newObject;
+            }
+        }
+
+        return awaitHandoff(waitStart);
+    }
+
+    private T pollBeforeGrow(final long waitStart) throws InterruptedException {
+        final long pollTime = maxWaitTime < 0 ? growWaitTime : Math.min(growWaitTime,
+            TimeUnit.MILLISECONDS.toNanos(maxWaitTime) - (System.nanoTime() - waitStart));
+
+        final T pooledObject = handoffQueue.poll(pollTime, TimeUnit.NANOSECONDS);
+        return pooledObject != null && reserve(pooledObject) ? pooledObject : null;
+    }
+
+    /**
+     * Adds a new object to the pool, if the maximum size isn't reached yet.
+     *
+     * @return the new object (in use) if it has been created by the calling thread or
+     *     {@code null} if it is created in background (or the pool is at its maximum size).
+     */
+    private T grow() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= maxSize) {
+                return null;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+
+        // Handed off to a waiting thread as soon as it's open
+        final boolean opening = runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                addObject(openNewObject());
+            }
+        });
+
+        if (opening) {
+            return null;
+        }
+
+        // Opened on first use - just like the initial objects
+        final T newInstance = newObject();
+        allObjects.add(newInstance);
+        return newInstance;
+    }
+
+    private void recordWait(final long waitTime) {
+        waitCount.incrementAndGet();
+        totalWaitTime.addAndGet(waitTime);
+
+        long longest;
+        do {
+            longest = longestWaitTime.get();
+            if (waitTime <= longest) {
+                return;
+            }
+        } while (!longestWaitTime.compareAndSet(longest, waitTime));
+    }
+
+    private static boolean reserve(final AbstractPooledObject pooledObject) {
+        return pooledObject.compareAndSetState(AbstractPooledObject.STATE_IDLE,
+            AbstractPooledObject.STATE_IN_USE);
+    }
+
+    private T steal() {
+        final Object[] objects = allObjects.toArray();
+        if (objects.length == 0) {
+            return null;
+        }
+
+        // Start scanning at a thread specific offset to spread threads across the objects
+        final int offset = (int) (Thread.currentThread().getId() % objects.length);
+
+        for (int i = 0; i < objects.length; i++) {
+            @SuppressWarnings("unchecked")
+            final T pooledObject = (T) objects[(offset + i) % objects.length];
+            if (reserve(pooledObject)) {
+                return pooledObject;
             }
         }
 
-        return needToEvict(pooledObject) ? recycle(pooledObject) : pooledObject;
+        return null;
+    }
+
+    private T awaitHandoff(final long waitStart) throws InterruptedException {
+        final long deadline = waitStart + TimeUnit.MILLISECONDS.toNanos(maxWaitTime);
+
+        while (true) {
+            final T pooledObject;
+            if (maxWaitTime < 0) {
+                pooledObject = handoffQueue.take();
+            } else {
+                pooledObject =
+                    handoffQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+                if (pooledObject == null) {
+                    // Timed out
+                    return null;
+                }
+            }
+
+            if (reserve(pooledObject)) {
+                return pooledObject;
+            }
+        }
+    }
+
+    private T activate(final T pooledObject) {
+        // Without background executor, expired objects are replaced by the borrowing thread
+        if (executor == null && needToEvict(pooledObject) && acquireRotation()) {
+            final T newInstance = recycle(pooledObject);
+            lastUsed.set(newInstance);
+            return newInstance;
+        }
+
+        if (lastUsed.get() != pooledObject) {
+            lastUsed.set(pooledObject);
+        }
+
+        return pooledObject;
     }
 
     private boolean needToEvict(final T pooledObject) {
-        return maxLifeTime < 0 || pooledObject.lifeTime() > maxLifeTime;
+        final long objectMaxLifeTime = pooledObject.getMaxLifeTime();
+        return objectMaxLifeTime >= 0 && pooledObject.lifeTime() > objectMaxLifeTime;
     }
 
+    /**
+     * Replaces the given object by a new one. The new instance is returned in use.
+     */
     private T recycle(final T oldInstance) {
-        final T newInstance = objectFactory.newInstance();
-        synchronized (allObjects) {
-            allObjects.remove(oldInstance);
-            allObjects.add(newInstance);
-        }
+        final T newInstance = newObject();
+        allObjects.add(newInstance);
 
+        oldInstance.setState(AbstractPooledObject.STATE_REMOVED);
+        allObjects.remove(oldInstance);
         oldInstance.close();
+
         return newInstance;
     }
 
     public void returnObject(final T pooledObject) {
-        pool.add(pooledObject);
+        if (pooledObject.isEvicted()) {
+            // Replaced in the meantime
+            if (pooledObject.compareAndSetState(AbstractPooledObject.STATE_IN_USE,
+                AbstractPooledObject.STATE_REMOVED)) {
+
+                destroy(pooledObject);
+            }
+            return;
+        }
+
+        if (isElastic()) {
+            pooledObject.markIdle();
+        }
+
+        // Objects removed in the meantime (pool closed) must not become available again
+        if (pooledObject.compareAndSetState(AbstractPooledObject.STATE_IN_USE,
+            AbstractPooledObject.STATE_IDLE)) {
+
+            if (pooledObject.isEvicted()) {
+                // Evicted concurrently
+                retire(pooledObject);
+            } else {
+                handoff(pooledObject);
+            }
+        }
+    }
+
+    private void handoff(final T pooledObject) {
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (pooledObject.getState() != AbstractPooledObject.STATE_IDLE
+                || handoffQueue.offer(pooledObject)) {
+                // Taken by a scanning thread or handed off to a waiting thread
+                return;
+            }
+
+            if ((i & HANDOFF_SPIN_MASK) == HANDOFF_SPIN_MASK) {
+                LockSupport.parkNanos(HANDOFF_PARK_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
     }
 
     public void invalidateObject(final T pooledObject) {
-        pool.add(recycle(pooledObject));
+        if (executor == null) {
+            final T newInstance = recycle(pooledObject);
+            lastUsed.set(newInstance);
+            returnObject(newInstance);
+            return;
+        }
+
+        pooledObject.evict();
+        pooledObject.setState(AbstractPooledObject.STATE_REMOVED);
+        destroy(pooledObject);
+
+        final boolean opening = runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                addObject(openNewObject());
+            }
+        });
+
+        if (!opening) {
+            // Keep the size - the replacement is opened on first use
+            addObject(newObject());
+        }
     }
 
-    public void close() {
-        synchronized (allObjects) {
-            for (T object : allObjects) {
-                object.close();
+    /**
+     * Returns the current size and the borrow wait times of this pool.
+     *
+     * @return a snapshot of the pool statistics.
+     */
+    public PoolStatistics getStatistics() {
+        int idle = 0;
+        for (final T pooledObject : allObjects) {
+            if (pooledObject.getState() == AbstractPooledObject.STATE_IDLE) {
+                idle++;
             }
         }
+
+        return new PoolStatistics(size.get(), idle, waiters.get(), waitCount.get(),
+            TimeUnit.NANOSECONDS.toMillis(totalWaitTime.get()),
+            TimeUnit.NANOSECONDS.toMillis(longestWaitTime.get()));
+    }
+
+    public void close() {
+        closed = true;
+
+        if (maintenanceTask != null) {
+            maintenanceTask.cancel(false);
+        }
+
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+
+        for (final T object : allObjects) {
+            object.setState(AbstractPooledObject.STATE_REMOVED);
+            object.close();
+        }
     }
 
 }
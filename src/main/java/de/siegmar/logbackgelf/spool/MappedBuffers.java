@@ -0,0 +1,61 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.spool;
+
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Explicit release of memory mappings. This implementation (via the {@code sun.misc.Cleaner} of
+ * the buffer) is used on Java versions prior to 11 - the multi-release layer in
+ * {@code META-INF/versions/11} replaces it.
+ */
+final class MappedBuffers {
+
+    private MappedBuffers() {
+    }
+
+    /**
+     * Releases the mapping of the given buffer - which must not be accessed afterwards. If the
+     * mapping can't be released explicitly, it is released once the buffer is garbage
+     * collected.
+     *
+     * @param buffer the buffer to unmap.
+     * @return {@code true} if the mapping has been released.
+     */
+    @SuppressWarnings("checkstyle:illegalcatch")
+    static boolean unmap(final MappedByteBuffer buffer) {
+        try {
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner == null) {
+                return false;
+            }
+
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+            return true;
+        } catch (final Exception e) {
+            // Not accessible on this JVM - released by the garbage collector
+            return false;
+        }
+    }
+
+}
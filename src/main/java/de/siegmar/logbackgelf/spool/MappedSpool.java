@@ -0,0 +1,295 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.spool;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Disk spool of append-only, memory-mapped segment files.
+ * <p>
+ * Frames are appended to the newest segment and drained (in order) from the oldest one. If the
+ * total size would exceed the configured maximum, the oldest segment is discarded.
+ * All state required for recovery is kept in the segment files, so the spool can be re-opened
+ * after a crash.
+ */
+public class MappedSpool {
+
+    private static final String FILE_SUFFIX = ".spool";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final Deque<SpoolSegment> segments = new ArrayDeque<>();
+
+    private volatile boolean empty = true;
+    private long evictedSegments;
+    private long nextSequence;
+
+    public MappedSpool(final Path directory, final int segmentSize, final long maxSize) {
+        if (segmentSize <= SpoolSegment.HEADER_LENGTH) {
+            throw new IllegalArgumentException("segmentSize must be > "
+                + SpoolSegment.HEADER_LENGTH);
+        }
+
+        if (maxSize < segmentSize) {
+            throw new IllegalArgumentException("maxSize must be >= segmentSize");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxSize / segmentSize);
+    }
+
+    /**
+     * Opens the spool and recovers all segments left over by a previous run.
+     *
+     * @throws IOException if the spool directory couldn't be created or read.
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream =
+                 Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (final Path file : stream) {
+                files.add(file);
+            }
+        }
+
+        // File names are zero padded sequence numbers
+        Collections.sort(files);
+
+        for (final Path file : files) {
+            recover(file);
+        }
+
+        while (segments.size() > maxSegments) {
+            evictOldest();
+        }
+
+        updateEmpty();
+    }
+
+    private void recover(final Path file) throws IOException {
+        final String name = file.getFileName().toString();
+        final long sequence;
+        try {
+            sequence = Long.parseLong(name.substring(0, name.length() - FILE_SUFFIX.length()));
+        } catch (final NumberFormatException e) {
+            // Not a segment file
+            return;
+        }
+
+        final SpoolSegment segment = SpoolSegment.recover(file);
+        if (segment == null) {
+            // Incomplete or corrupt segment
+            Files.delete(file);
+            return;
+        }
+
+        // Drained segments are of no use - except the latest, which is continued
+        final SpoolSegment previous = segments.peekLast();
+        if (previous != null && previous.getPendingBytes() == 0) {
+            segments.removeLast();
+            previous.delete();
+        }
+
+        segments.addLast(segment);
+        nextSequence = sequence + 1;
+    }
+
+    /**
+     * Appends a frame to the spool.
+     *
+     * @param frame the frame to append.
+     * @return {@code true} if the frame was spooled, {@code false} if it is too large to fit
+     *     into a segment.
+     * @throws IOException if a new segment couldn't be created.
+     */
+    public synchronized boolean append(final byte[] frame) throws IOException {
+        if (frame.length > segmentSize - SpoolSegment.HEADER_LENGTH) {
+            return false;
+        }
+
+        SpoolSegment segment = segments.peekLast();
+        if (segment == null || !segment.hasRemaining(frame.length)) {
+            segment = roll(segment);
+        }
+
+        segment.append(frame);
+        empty = false;
+
+        return true;
+    }
+
+    private SpoolSegment roll(final SpoolSegment current) throws IOException {
+        if (current != null) {
+            current.force();
+        }
+
+        while (segments.size() >= maxSegments) {
+            evictOldest();
+        }
+
+        final Path file =
+            directory.resolve(String.format("%019d%s", nextSequence++, FILE_SUFFIX));
+        final SpoolSegment segment = SpoolSegment.create(file, segmentSize);
+        segments.addLast(segment);
+
+        return segment;
+    }
+
+    private void evictOldest() {
+        final SpoolSegment segment = segments.removeFirst();
+        if (segment.getPendingBytes() > 0) {
+            evictedSegments++;
+        }
+
+        if (segment.isDraining()) {
+            // Deleted as soon as the running drain completes
+            segment.retire();
+        } else {
+            segment.delete();
+        }
+    }
+
+    /**
+     * Passes all pending data of the oldest segment to the given consumer. The data is
+     * removed from the spool only if the consumer completes without an exception.
+     *
+     * @param consumer the consumer receiving the data in bulk.
+     * @return the number of bytes drained.
+     * @throws Exception any exception thrown by the consumer.
+     */
+    public long drain(final SpoolConsumer consumer) throws Exception {
+        final SpoolSegment segment;
+        final int from;
+        final int to;
+
+        synchronized (this) {
+            segment = segments.peekFirst();
+            if (segment == null || segment.isDraining()) {
+                return 0;
+            }
+
+            from = segment.getReadPosition();
+            to = segment.getWritePosition();
+
+            if (from == to) {
+                discardIfDrained(segment);
+                return 0;
+            }
+
+            segment.setDraining(true);
+        }
+
+        boolean success = false;
+        try {
+            consumer.accept(segment.getChannel(), from, to - from);
+            success = true;
+        } finally {
+            completeDrain(segment, success ? to : from);
+        }
+
+        return to - from;
+    }
+
+    private synchronized void completeDrain(final SpoolSegment segment, final int position) {
+        segment.setDraining(false);
+
+        if (segment.isRetired()) {
+            segment.delete();
+        } else {
+            segment.commitRead(position);
+            if (segments.contains(segment)) {
+                discardIfDrained(segment);
+            } else {
+                // Spool has been closed in the meantime
+                segment.close();
+            }
+        }
+
+        updateEmpty();
+    }
+
+    private void discardIfDrained(final SpoolSegment segment) {
+        // The newest segment is kept for further appends
+        if (segment.getPendingBytes() == 0 && segment != segments.peekLast()) {
+            segments.remove(segment);
+            segment.delete();
+        }
+    }
+
+    private void updateEmpty() {
+        for (final SpoolSegment segment : segments) {
+            if (segment.getPendingBytes() > 0) {
+                empty = false;
+                return;
+            }
+        }
+
+        empty = true;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Number of segments (with pending data) discarded because the size limit was reached.
+     */
+    public synchronized long getEvictedSegments() {
+        return evictedSegments;
+    }
+
+    public synchronized long getPendingBytes() {
+        long pending = 0;
+        for (final SpoolSegment segment : segments) {
+            pending += segment.getPendingBytes();
+        }
+        return pending;
+    }
+
+    /**
+     * Flushes all segments to disk and closes them. Pending data is recovered by the next
+     * call to {@link #open()}.
+     */
+    public synchronized void close() {
+        for (final SpoolSegment segment : segments) {
+            segment.force();
+            if (!segment.isDraining()) {
+                segment.close();
+            }
+        }
+
+        segments.clear();
+        empty = true;
+    }
+
+}
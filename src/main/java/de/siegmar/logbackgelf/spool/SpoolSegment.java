@@ -0,0 +1,191 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.spool;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A single append-only, memory-mapped segment file of a {@link MappedSpool}.
+ * <p>
+ * Layout: a fixed size header (magic, committed write position, read position) followed by
+ * the raw frames. The write position is only updated after a frame has been copied completely,
+ * so a crash in the middle of an append never exposes a partial frame on recovery.
+ * <p>
+ * Closing a segment releases its mapping explicitly - otherwise the disk space of a deleted
+ * segment is kept until the buffer happens to be garbage collected. The buffer must not be
+ * accessed after {@link #close()}.
+ */
+final class SpoolSegment {
+
+    static final int HEADER_LENGTH = 16;
+
+    private static final int MAGIC = 0x47454c46;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int WRITE_POSITION_OFFSET = 4;
+    private static final int READ_POSITION_OFFSET = 8;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private int writePosition;
+    private int readPosition;
+    private boolean draining;
+    private boolean retired;
+    private boolean closed;
+
+    private SpoolSegment(final Path file, final FileChannel channel,
+                         final MappedByteBuffer buffer) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static SpoolSegment create(final Path file, final int size) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        final SpoolSegment segment = new SpoolSegment(file, channel, buffer);
+        segment.writePosition = HEADER_LENGTH;
+        segment.readPosition = HEADER_LENGTH;
+        buffer.putInt(WRITE_POSITION_OFFSET, HEADER_LENGTH);
+        buffer.putInt(READ_POSITION_OFFSET, HEADER_LENGTH);
+
+        // Magic is written last - a segment without magic is discarded on recovery
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+
+        return segment;
+    }
+
+    /**
+     * Opens an existing segment file.
+     *
+     * @return the recovered segment or {@code null} if the file is not a valid segment.
+     */
+    static SpoolSegment recover(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final long size = channel.size();
+
+        if (size <= HEADER_LENGTH || size > Integer.MAX_VALUE) {
+            channel.close();
+            return null;
+        }
+
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        final int writePos = buffer.getInt(WRITE_POSITION_OFFSET);
+        final int readPos = buffer.getInt(READ_POSITION_OFFSET);
+
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC || readPos < HEADER_LENGTH
+            || writePos < readPos || writePos > size) {
+            MappedBuffers.unmap(buffer);
+            channel.close();
+            return null;
+        }
+
+        final SpoolSegment segment = new SpoolSegment(file, channel, buffer);
+        segment.writePosition = writePos;
+        segment.readPosition = readPos;
+        return segment;
+    }
+
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    int getReadPosition() {
+        return readPosition;
+    }
+
+    int getPendingBytes() {
+        return writePosition - readPosition;
+    }
+
+    boolean hasRemaining(final int length) {
+        return buffer.capacity() - writePosition >= length;
+    }
+
+    void append(final byte[] frame) {
+        buffer.position(writePosition);
+        buffer.put(frame);
+
+        writePosition += frame.length;
+        buffer.putInt(WRITE_POSITION_OFFSET, writePosition);
+    }
+
+    void commitRead(final int position) {
+        readPosition = position;
+        buffer.putInt(READ_POSITION_OFFSET, position);
+    }
+
+    boolean isDraining() {
+        return draining;
+    }
+
+    void setDraining(final boolean draining) {
+        this.draining = draining;
+    }
+
+    boolean isRetired() {
+        return retired;
+    }
+
+    void retire() {
+        retired = true;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        MappedBuffers.unmap(buffer);
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            // ignore
+        }
+    }
+
+    boolean delete() {
+        close();
+        try {
+            return Files.deleteIfExists(file);
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Connection attempt to the Graylog server.
+ */
+@Name("de.siegmar.logbackgelf.Connect")
+@Label("GELF Connect")
+@Description("Connection attempt to the Graylog server.")
+@Category("Logback GELF")
+public class ConnectEvent extends Event {
+
+    @Label("Address")
+    @Description("Address connected to - null if the attempt failed.")
+    private String address;
+
+    @Label("Port")
+    @Description("Port of the Graylog server.")
+    private int port;
+
+    @Label("Success")
+    @Description("If the connection has been established.")
+    private boolean success;
+
+    public void setAddress(final String address) {
+        this.address = address;
+    }
+
+    public void setPort(final int port) {
+        this.port = port;
+    }
+
+    public void setSuccess(final boolean success) {
+        this.success = success;
+    }
+
+}
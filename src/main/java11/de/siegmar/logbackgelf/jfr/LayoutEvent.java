@@ -0,0 +1,49 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Creation of a GELF message by GelfLayout.
+ */
+@Name("de.siegmar.logbackgelf.Layout")
+@Label("GELF Layout")
+@Description("Creation of a GELF message by GelfLayout.")
+@Category("Logback GELF")
+@Threshold("1 ms")
+@StackTrace(false)
+public class LayoutEvent extends Event {
+
+    @Label("Message Size")
+    @Description("Number of characters of the GELF message.")
+    private int messageSize;
+
+    public void setMessageSize(final int messageSize) {
+        this.messageSize = messageSize;
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Write of one or more GELF messages to a connection.
+ */
+@Name("de.siegmar.logbackgelf.TcpWrite")
+@Label("GELF TCP Write")
+@Description("Write of one or more GELF messages to a connection.")
+@Category("Logback GELF")
+@Threshold("10 ms")
+public class TcpWriteEvent extends Event {
+
+    @Label("Address")
+    @Description("Address of the Graylog server.")
+    private String address;
+
+    @Label("Bytes")
+    @Description("Number of bytes written.")
+    @DataAmount
+    private long bytes;
+
+    @Label("Success")
+    @Description("If the data has been written completely.")
+    private boolean success;
+
+    public void setAddress(final String address) {
+        this.address = address;
+    }
+
+    public void setBytes(final long bytes) {
+        this.bytes = bytes;
+    }
+
+    public void setSuccess(final boolean success) {
+        this.success = success;
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.spool;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Explicit release of memory mappings via {@code sun.misc.Unsafe#invokeCleaner}.
+ */
+final class MappedBuffers {
+
+    private static final Object UNSAFE = unsafe();
+    private static final Method INVOKE_CLEANER = invokeCleaner(UNSAFE);
+
+    private MappedBuffers() {
+    }
+
+    @SuppressWarnings("checkstyle:illegalcatch")
+    private static Object unsafe() {
+        try {
+            final Field theUnsafe = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return theUnsafe.get(null);
+        } catch (final Exception e) {
+            // jdk.unsupported not available - released by the garbage collector
+            return null;
+        }
+    }
+
+    private static Method invokeCleaner(final Object unsafe) {
+        if (unsafe == null) {
+            return null;
+        }
+
+        try {
+            return unsafe.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Releases the mapping of the given buffer - which must not be accessed afterwards. If the
+     * mapping can't be released explicitly, it is released once the buffer is garbage
+     * collected.
+     *
+     * @param buffer the buffer to unmap.
+     * @return {@code true} if the mapping has been released.
+     */
+    static boolean unmap(final MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return false;
+        }
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            return true;
+        } catch (final ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Access to Unix domain sockets using the JEP 380 support of {@link SocketChannel}.
+ */
+final class UnixSockets {
+
+    private UnixSockets() {
+    }
+
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Opens a blocking channel connected to the given socket file.
+     *
+     * @param path the path of the socket file.
+     * @return the connected channel.
+     * @throws IOException if the channel couldn't be opened or connected.
+     */
+    static SocketChannel connect(final String path) throws IOException {
+        final SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            // Connecting to a local socket file never blocks for long - no timeout required
+            channel.connect(UnixDomainSocketAddress.of(path));
+            return channel;
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+}
@@ -20,11 +20,22 @@
 package de.siegmar.logbackgelf;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
+import java.io.IOException;
 import java.net.InetAddress;
+import java.net.ServerSocket;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.net.SocketFactory;
+
 import org.junit.Test;
 
 public class AddressResolverTest {
@@ -47,4 +58,175 @@ public class AddressResolverTest {
         assertEquals("8.8.8.8", resolver.resolve().getHostAddress());
     }
 
+    @Test
+    public void ejection() throws Exception {
+        final AddressResolver resolver = resolver(100, 1000, 1000, "127.0.0.1", "127.0.0.2");
+        final InetAddress failing = InetAddress.getByName("127.0.0.2");
+
+        // A single failure is tolerated
+        resolver.reportFailure(failing);
+        assertEquals(1, count(resolver, failing, 2));
+
+        resolver.reportFailure(failing);
+        assertEquals(0, count(resolver, failing, 10));
+
+        // Retried after the backoff
+        Thread.sleep(150);
+        assertEquals(1, count(resolver, failing, 2));
+
+        // A single failure after the backoff ejects again - with doubled backoff
+        resolver.reportFailure(failing);
+        Thread.sleep(150);
+        assertEquals(0, count(resolver, failing, 10));
+
+        Thread.sleep(100);
+        resolver.reportSuccess(failing);
+        assertEquals(1, count(resolver, failing, 2));
+    }
+
+    @Test
+    public void allEjected() throws Exception {
+        final AddressResolver resolver = resolver(100, 1000, 1000, "127.0.0.1", "127.0.0.2");
+        final InetAddress first = InetAddress.getByName("127.0.0.1");
+        final InetAddress second = InetAddress.getByName("127.0.0.2");
+
+        resolver.reportFailure(second);
+        resolver.reportFailure(second);
+        Thread.sleep(10);
+        resolver.reportFailure(first);
+        resolver.reportFailure(first);
+
+        // The address ejected first is used first
+        assertEquals(2, count(resolver, second, 2));
+    }
+
+    @Test
+    public void leastOutstanding() throws Exception {
+        final AddressResolver resolver = resolver(100, 1000, 1000, "127.0.0.1", "127.0.0.2");
+        final InetAddress stalled = InetAddress.getByName("127.0.0.1");
+
+        resolver.writeStarted(stalled);
+        assertEquals(0, count(resolver, stalled, 10));
+
+        resolver.writeCompleted(stalled, 0, true);
+        assertEquals(1, count(resolver, stalled, 2));
+    }
+
+    @Test
+    public void slowWrite() throws Exception {
+        final AddressResolver resolver = resolver(100, 1000, 10, "127.0.0.1", "127.0.0.2");
+        final InetAddress slow = InetAddress.getByName("127.0.0.1");
+
+        for (int i = 0; i < 2; i++) {
+            resolver.writeStarted(slow);
+            resolver.writeCompleted(slow, TimeUnit.MILLISECONDS.toNanos(20), true);
+        }
+
+        assertEquals(0, count(resolver, slow, 10));
+    }
+
+    @Test
+    public void trafficMovesAwayFromClosedNode() throws Exception {
+        final ServerSocket serverSocket1 =
+            new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        final int port = serverSocket1.getLocalPort();
+        final ServerSocket serverSocket2 =
+            new ServerSocket(port, 50, InetAddress.getByName("127.0.0.2"));
+
+        final TcpServer server1 = new TcpServer(serverSocket1);
+        final TcpServer server2 = new TcpServer(serverSocket2);
+
+        // Nothing listens on 127.0.0.3
+        final List<String> resolved = Collections.synchronizedList(new ArrayList<String>());
+        final AddressResolver resolver = new AddressResolver("foo", new AtomicInteger(),
+            60_000, 60_000, 60_000) {
+            @Override
+            InetAddress[] lookup() throws UnknownHostException {
+                return addresses("127.0.0.1", "127.0.0.2", "127.0.0.3");
+            }
+
+            @Override
+            public InetAddress resolve() throws UnknownHostException {
+                final InetAddress address = super.resolve();
+                resolved.add(address.getHostAddress());
+                return address;
+            }
+        };
+
+        try {
+            int failures = 0;
+            for (int i = 0; i < 30; i++) {
+                final TcpConnection connection =
+                    new TcpConnection(SocketFactory.getDefault(), resolver, port, 1000);
+                try {
+                    connection.write("message\0".getBytes(StandardCharsets.UTF_8));
+                } catch (final IOException e) {
+                    failures++;
+                } finally {
+                    connection.close();
+                }
+            }
+
+            // Connects to the closed node stop after two failures
+            assertEquals(2, failures);
+            assertEquals(2, Collections.frequency(resolved, "127.0.0.3"));
+
+            server1.receiveMessages(Collections.frequency(resolved, "127.0.0.1"));
+            server2.receiveMessages(Collections.frequency(resolved, "127.0.0.2"));
+            assertNotEquals(0, Collections.frequency(resolved, "127.0.0.2"));
+        } finally {
+            server1.close();
+            server2.close();
+        }
+    }
+
+    @Test
+    public void resolveAll() throws Exception {
+        final AddressResolver resolver = resolver(1000, 1000, 1000,
+            "2001:db8::1", "2001:db8::2", "10.0.0.1", "10.0.0.2");
+
+        // Preferred address first, then alternating address families
+        assertEquals(Arrays.asList(addresses("2001:db8::1", "10.0.0.1", "2001:db8::2",
+            "10.0.0.2")), resolver.resolveAll());
+
+        // Ejected addresses last
+        final InetAddress failing = InetAddress.getByName("10.0.0.1");
+        resolver.reportFailure(failing);
+        resolver.reportFailure(failing);
+        assertEquals(Arrays.asList(addresses("2001:db8::2", "10.0.0.2", "2001:db8::1",
+            "10.0.0.1")), resolver.resolveAll());
+    }
+
+    private static AddressResolver resolver(final long minEjectionTime,
+                                            final long maxEjectionTime,
+                                            final long slowWriteThreshold,
+                                            final String... ips) {
+        return new AddressResolver("foo", new AtomicInteger(), minEjectionTime,
+            maxEjectionTime, slowWriteThreshold) {
+            @Override
+            InetAddress[] lookup() throws UnknownHostException {
+                return addresses(ips);
+            }
+        };
+    }
+
+    private static InetAddress[] addresses(final String... ips) throws UnknownHostException {
+        final InetAddress[] addresses = new InetAddress[ips.length];
+        for (int i = 0; i < ips.length; i++) {
+            addresses[i] = InetAddress.getByName(ips[i]);
+        }
+        return addresses;
+    }
+
+    private static int count(final AddressResolver resolver, final InetAddress address,
+                             final int resolves) throws UnknownHostException {
+        int count = 0;
+        for (int i = 0; i < resolves; i++) {
+            if (resolver.resolve().equals(address)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
 }
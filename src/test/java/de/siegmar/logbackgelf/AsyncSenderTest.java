@@ -0,0 +1,121 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AsyncSenderTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final CountDownLatch completed = new CountDownLatch(3);
+
+    private final Runnable send = new Runnable() {
+        @Override
+        public void run() {
+            final int current = running.incrementAndGet();
+            maxRunning.set(Math.max(maxRunning.get(), current));
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            completed.countDown();
+        }
+    };
+
+    @Test
+    public void fireAndForget() throws InterruptedException {
+        final AsyncSender sender = new AsyncSender(Executors.newCachedThreadPool(), 1, -1, 100);
+
+        // Never blocks - sends beyond the limit wait on their own thread
+        for (int i = 0; i < 3; i++) {
+            assertTrue(sender.submit(send));
+        }
+
+        Thread.sleep(100);
+        assertEquals(1, running.get());
+
+        release.countDown();
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+
+        sender.close();
+        assertFalse(sender.submit(send));
+    }
+
+    @Test
+    public void boundedWait() throws InterruptedException {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final AsyncSender sender = new AsyncSender(executor, 2, 50, 100);
+
+        assertTrue(sender.submit(send));
+        assertTrue(sender.submit(send));
+
+        // No free slot within the handoff timeout
+        final long start = System.nanoTime();
+        assertFalse(sender.submit(send));
+        final long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Waited " + waited + " ms", waited >= 40);
+
+        release.countDown();
+        sender.close();
+        assertTrue(executor.isTerminated());
+        assertEquals(1, completed.getCount());
+    }
+
+    @Test
+    public void maxPending() throws InterruptedException {
+        final AsyncSender sender = new AsyncSender(Executors.newCachedThreadPool(), 1, -1, 2);
+
+        assertTrue(sender.submit(send));
+        assertTrue(sender.submit(send));
+
+        // Doesn't pile up while the sends are stalled
+        assertFalse(sender.submit(send));
+
+        // Accepted again as soon as the pending sends are completed
+        release.countDown();
+        boolean accepted = false;
+        for (int i = 0; i < 1000 && !accepted; i++) {
+            accepted = sender.submit(send);
+            if (!accepted) {
+                Thread.sleep(10);
+            }
+        }
+        assertTrue(accepted);
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+
+        sender.close();
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.qos.logback.core.ContextBase;
+import ch.qos.logback.core.spi.ContextAwareBase;
+import ch.qos.logback.core.status.Status;
+
+public class CircuitBreakerTest {
+
+    private final ContextAwareBase reporter = new ContextAwareBase();
+
+    @Before
+    public void before() {
+        reporter.setContext(new ContextBase());
+    }
+
+    @Test
+    public void opensAfterThreshold() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(reporter, 3, 10_000, 10_000);
+
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        assertTrue(circuitBreaker.allowRequest());
+
+        // A success resets the failure count
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        assertTrue(circuitBreaker.allowRequest());
+
+        circuitBreaker.recordFailure();
+        assertFalse(circuitBreaker.isClosed());
+        assertFalse(circuitBreaker.allowRequest());
+        assertEquals(1, countStatus(Status.WARN));
+    }
+
+    @Test
+    public void halfOpenProbe() throws InterruptedException {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(reporter, 1, 100, 10_000);
+
+        circuitBreaker.recordFailure();
+        assertFalse(circuitBreaker.allowRequest());
+
+        // A single probe after the backoff
+        Thread.sleep(150);
+        assertTrue(circuitBreaker.allowRequest());
+        assertFalse(circuitBreaker.allowRequest());
+
+        // Failed probe - open again, with doubled backoff (100 - 200 ms with jitter)
+        circuitBreaker.recordFailure();
+        Thread.sleep(50);
+        assertFalse(circuitBreaker.allowRequest());
+        Thread.sleep(200);
+        assertTrue(circuitBreaker.allowRequest());
+
+        circuitBreaker.recordSuccess();
+        assertTrue(circuitBreaker.isClosed());
+        assertTrue(circuitBreaker.allowRequest());
+
+        // Transitions are reported once
+        assertEquals(1, countStatus(Status.WARN));
+        assertEquals(1, countStatus(Status.INFO));
+    }
+
+    @Test
+    public void cancelledProbe() throws InterruptedException {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(reporter, 1, 100, 10_000);
+
+        circuitBreaker.recordFailure();
+        Thread.sleep(150);
+        assertTrue(circuitBreaker.allowRequest());
+
+        // Probe didn't reach the server - another probe is permitted at once
+        circuitBreaker.recordCancelled();
+        assertTrue(circuitBreaker.allowRequest());
+
+        circuitBreaker.recordSuccess();
+        assertTrue(circuitBreaker.isClosed());
+
+        // No effect on a closed circuit
+        circuitBreaker.recordCancelled();
+        assertTrue(circuitBreaker.isClosed());
+    }
+
+    @Test
+    public void disabled() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(reporter, 0, 100, 100);
+
+        for (int i = 0; i < 100; i++) {
+            circuitBreaker.recordFailure();
+        }
+
+        assertTrue(circuitBreaker.allowRequest());
+        assertEquals(0, countStatus(Status.WARN));
+    }
+
+    private int countStatus(final int level) {
+        int count = 0;
+        for (final Status status : reporter.getStatusManager().getCopyOfStatusList()) {
+            if (status.getLevel() == level) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.siegmar.logbackgelf.pool.PooledObjectFactory;
+import de.siegmar.logbackgelf.pool.SimpleObjectPool;
+
+public class CombiningWriterTest {
+
+    private final AtomicInteger writes = new AtomicInteger();
+    private final AtomicInteger messages = new AtomicInteger();
+    private volatile boolean failing;
+
+    private final SimpleObjectPool<AbstractTcpConnection> pool = new SimpleObjectPool<>(
+        new PooledObjectFactory<AbstractTcpConnection>() {
+            @Override
+            public AbstractTcpConnection newInstance() {
+                return new CountingConnection();
+            }
+        }, 1, -1, -1);
+
+    @Test
+    public void concurrent() throws Exception {
+        final CombiningWriter writer = new CombiningWriter(pool);
+
+        final int threads = 8;
+        final int messagesPerThread = 500;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < messagesPerThread; i++) {
+                            writer.write(new byte[]{'x', 0});
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (final Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Every message is written exactly once - with far fewer writes
+        assertEquals(threads * messagesPerThread, messages.get());
+        assertTrue("Writes: " + writes.get(), writes.get() < threads * messagesPerThread / 2);
+    }
+
+    @Test
+    public void failure() throws Exception {
+        final CombiningWriter writer = new CombiningWriter(pool);
+        failing = true;
+
+        try {
+            writer.write(new byte[]{'x', 0});
+            fail("Expected IOException");
+        } catch (final IOException e) {
+            assertEquals("Write failed", e.getMessage());
+        }
+
+        // The failed message is not written later on
+        failing = false;
+        writer.write(new byte[]{'y', 0});
+        assertEquals(1, writes.get());
+        assertEquals(1, messages.get());
+    }
+
+    private final class CountingConnection extends AbstractTcpConnection {
+
+        private boolean connected;
+
+        CountingConnection() {
+            super(new AddressResolver("127.0.0.1"), 12201, 1000);
+        }
+
+        @Override
+        protected boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        protected void connect(final InetAddress ip) {
+            connected = true;
+        }
+
+        @Override
+        protected void writeMessage(final byte[] messageToSend) throws IOException {
+            if (failing) {
+                throw new IOException("Write failed");
+            }
+
+            writes.incrementAndGet();
+            for (final byte b : messageToSend) {
+                if (b == 0) {
+                    messages.incrementAndGet();
+                }
+            }
+
+            // Simulate a syscall, so other threads publish messages in the meantime
+            try {
+                Thread.sleep(1);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        protected void transfer(final FileChannel channel, final long position,
+                                final long count) {
+        }
+
+        @Override
+        protected void disconnect() {
+            connected = false;
+        }
+
+    }
+
+}
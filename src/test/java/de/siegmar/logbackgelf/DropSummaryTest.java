@@ -0,0 +1,165 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.qos.logback.classic.LoggerContext;
+
+public class DropSummaryTest {
+
+    private final RecordingAppender appender = new RecordingAppender();
+
+    @Test
+    public void summary() throws IOException {
+        start(60_000);
+
+        appender.messageDropped(DropReason.QUEUE_OVERFLOW);
+        appender.messageDropped(DropReason.QUEUE_OVERFLOW);
+        appender.messageDropped(DropReason.SEND_FAILURE);
+
+        // Summary of the incomplete interval
+        appender.stop();
+
+        assertEquals(1, appender.priorityMessages.size());
+        assertTrue(appender.messages.isEmpty());
+
+        final JsonNode summary = new ObjectMapper().readTree(appender.priorityMessages.get(0));
+        assertEquals(4, summary.get("level").intValue());
+        assertTrue(summary.get("short_message").textValue()
+            .startsWith("3 GELF message(s) dropped by appender GELF within the last "));
+        assertEquals("GELF_DROP_SUMMARY", summary.get("_marker").textValue());
+        assertEquals("3", summary.get("_dropped_total").textValue());
+        assertEquals("2", summary.get("_dropped_queue_overflow").textValue());
+        assertEquals("1", summary.get("_dropped_send_failure").textValue());
+        assertFalse(summary.has("_dropped_message_too_large"));
+        assertTrue(summary.get("_drop_window_start").asLong()
+            <= summary.get("_drop_window_end").asLong());
+    }
+
+    @Test
+    public void withoutMdcData() throws IOException {
+        final GelfLayout layout = new GelfLayout();
+        layout.setContext(new LoggerContext());
+        layout.setIncludeMdcData(false);
+        layout.start();
+        appender.setLayout(layout);
+        start(60_000);
+
+        appender.messageDropped(DropReason.SEND_FAILURE);
+        appender.stop();
+
+        // Counts are fields of the summary - not MDC data
+        final JsonNode summary = new ObjectMapper().readTree(appender.priorityMessages.get(0));
+        assertEquals("1", summary.get("_dropped_total").textValue());
+        assertEquals("1", summary.get("_dropped_send_failure").textValue());
+        assertTrue(summary.has("_drop_window_start"));
+    }
+
+    @Test
+    public void carriedOver() throws Exception {
+        appender.available = false;
+        start(50);
+
+        appender.messageDropped(DropReason.SEND_FAILURE);
+        Thread.sleep(200);
+        appender.messageDropped(DropReason.QUEUE_OVERFLOW);
+        assertTrue(appender.priorityMessages.isEmpty());
+
+        // Summaries that couldn't be sent are merged into the next one
+        appender.available = true;
+        for (int i = 0; i < 500 && appender.priorityMessages.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        appender.stop();
+
+        assertEquals(1, appender.priorityMessages.size());
+        final JsonNode summary = new ObjectMapper().readTree(appender.priorityMessages.get(0));
+        assertEquals("2", summary.get("_dropped_total").textValue());
+        assertEquals("1", summary.get("_dropped_send_failure").textValue());
+        assertEquals("1", summary.get("_dropped_queue_overflow").textValue());
+    }
+
+    @Test
+    public void noDrops() {
+        start(60_000);
+        appender.stop();
+
+        assertTrue(appender.priorityMessages.isEmpty());
+    }
+
+    @Test
+    public void disabled() {
+        start(0);
+        appender.messageDropped(DropReason.SEND_FAILURE);
+        appender.stop();
+
+        assertTrue(appender.priorityMessages.isEmpty());
+    }
+
+    private void start(final int dropSummaryInterval) {
+        appender.setContext(new LoggerContext());
+        appender.setName("GELF");
+        appender.setGraylogHost("localhost");
+        appender.setMetricsEnabled(false);
+        appender.setDropSummaryInterval(dropSummaryInterval);
+        appender.start();
+        assertTrue(appender.isStarted());
+    }
+
+    private static final class RecordingAppender extends AbstractGelfAppender {
+
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private final List<String> priorityMessages = new CopyOnWriteArrayList<>();
+        private volatile boolean available = true;
+
+        @Override
+        protected void appendMessage(final byte[] messageToSend) {
+            messages.add(new String(messageToSend, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        protected boolean appendPriorityMessage(final byte[] messageToSend) {
+            if (!available) {
+                return false;
+            }
+            priorityMessages.add(new String(messageToSend, StandardCharsets.UTF_8));
+            return true;
+        }
+
+        @Override
+        protected void close() {
+        }
+
+    }
+
+}
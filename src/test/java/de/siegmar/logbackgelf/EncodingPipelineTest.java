@@ -0,0 +1,150 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class EncodingPipelineTest {
+
+    private final LoggerContext lc = new LoggerContext();
+
+    @Test
+    public void order() throws InterruptedException {
+        final List<String> delivered = new ArrayList<>();
+        final AtomicInteger concurrentDeliveries = new AtomicInteger();
+
+        final AbstractEncodingPipeline pipeline = new AbstractEncodingPipeline(4, 16) {
+            @Override
+            protected byte[] encode(final ILoggingEvent event) {
+                randomDelay();
+                return event.getMessage().getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            protected void deliver(final ILoggingEvent event, final byte[] message) {
+                if (concurrentDeliveries.incrementAndGet() != 1) {
+                    throw new IllegalStateException("Concurrent delivery");
+                }
+                delivered.add(new String(message, StandardCharsets.UTF_8));
+                concurrentDeliveries.decrementAndGet();
+            }
+        };
+
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add("Message " + i);
+            pipeline.submit(event("Message " + i));
+        }
+        pipeline.close();
+
+        assertArrayEquals(expected.toArray(), delivered.toArray());
+    }
+
+    @Test
+    public void encodingFailure() throws InterruptedException {
+        final List<String> delivered = new ArrayList<>();
+
+        final AbstractEncodingPipeline pipeline = new AbstractEncodingPipeline(2, 16) {
+            @Override
+            protected byte[] encode(final ILoggingEvent event) {
+                return "skip".equals(event.getMessage())
+                    ? null : event.getMessage().getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            protected void deliver(final ILoggingEvent event, final byte[] message) {
+                delivered.add(new String(message, StandardCharsets.UTF_8));
+            }
+        };
+
+        pipeline.submit(event("first"));
+        pipeline.submit(event("skip"));
+        pipeline.submit(event("last"));
+        pipeline.close();
+
+        // Events that couldn't be encoded don't block the following ones
+        assertEquals(2, delivered.size());
+        assertEquals("first", delivered.get(0));
+        assertEquals("last", delivered.get(1));
+    }
+
+    @Test(timeout = 10_000)
+    public void rejected() throws InterruptedException {
+        final List<String> delivered = new ArrayList<>();
+
+        final AbstractEncodingPipeline pipeline = new AbstractEncodingPipeline(1, 1) {
+            @Override
+            protected byte[] encode(final ILoggingEvent event) {
+                return event.getMessage().getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            protected void deliver(final ILoggingEvent event, final byte[] message) {
+                delivered.add(new String(message, StandardCharsets.UTF_8));
+            }
+        };
+        pipeline.close();
+
+        // Rejected events must release their queue capacity - the second submit would block
+        for (int i = 0; i < 2; i++) {
+            try {
+                pipeline.submit(event("rejected"));
+                fail("Expected RejectedExecutionException");
+            } catch (final RejectedExecutionException expected) {
+                // expected
+            }
+        }
+
+        assertEquals(0, delivered.size());
+    }
+
+    private static void randomDelay() {
+        // Workers complete in random order
+        if (ThreadLocalRandom.current().nextInt(10) == 0) {
+            try {
+                Thread.sleep(1);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private ILoggingEvent event(final String message) {
+        return new LoggingEvent(EncodingPipelineTest.class.getName(),
+            lc.getLogger(EncodingPipelineTest.class), Level.INFO, message, null, null);
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.qos.logback.core.ContextBase;
+import ch.qos.logback.core.spi.ContextAwareBase;
+import ch.qos.logback.core.status.Status;
+
+public class ErrorReporterTest {
+
+    private final ContextAwareBase reporter = new ContextAwareBase();
+
+    @Before
+    public void before() {
+        reporter.setContext(new ContextBase());
+    }
+
+    @Test
+    public void aggregate() {
+        final ErrorReporter errorReporter = ErrorReporter.schedule(reporter,
+            reporter.getContext().getScheduledExecutorService(), 60_000);
+
+        final IOException first = new IOException("first");
+        errorReporter.report("Error sending", first);
+        errorReporter.report("Error sending", new IOException("second"));
+        errorReporter.report("Error sending", new IOException("third"));
+
+        // Only the first error is reported - with its cause
+        List<Status> statusList = statusList();
+        assertEquals(1, statusList.size());
+        assertSame(first, statusList.get(0).getThrowable());
+
+        // Summary at the end of the interval
+        errorReporter.run();
+        statusList = statusList();
+        assertEquals(2, statusList.size());
+        assertEquals("Error sending - 2 more time(s) within the last 60000 ms "
+            + "(last cause: java.io.IOException: third)", statusList.get(1).getMessage());
+        assertNull(statusList.get(1).getThrowable());
+
+        // The next interval starts with a full report again
+        errorReporter.report("Error sending", first);
+        errorReporter.close();
+        assertEquals(3, statusList().size());
+    }
+
+    @Test
+    public void disabled() {
+        final ErrorReporter errorReporter = ErrorReporter.schedule(reporter,
+            reporter.getContext().getScheduledExecutorService(), 0);
+
+        for (int i = 0; i < 3; i++) {
+            errorReporter.report("Error sending", null);
+        }
+        errorReporter.close();
+
+        assertEquals(3, statusList().size());
+        assertEquals(Status.ERROR, statusList().get(2).getLevel());
+    }
+
+    private List<Status> statusList() {
+        return reporter.getContext().getStatusManager().getCopyOfStatusList();
+    }
+
+}
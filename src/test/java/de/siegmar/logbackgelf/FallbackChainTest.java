@@ -0,0 +1,95 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+public class FallbackChainTest {
+
+    private final LoggerContext lc = new LoggerContext();
+    private final FallbackChain chain = new FallbackChain();
+
+    @Test
+    public void chain() {
+        final FailingAppender failing = new FailingAppender();
+        failing.setContext(lc);
+        failing.setName("failing");
+        failing.setGraylogHost("localhost");
+        failing.start();
+
+        final ListAppender<ILoggingEvent> list = new ListAppender<>();
+        list.setContext(lc);
+        list.setName("list");
+        list.start();
+
+        chain.add(failing);
+        chain.add(list);
+
+        final ILoggingEvent event = new LoggingEvent(FallbackChainTest.class.getName(),
+            lc.getLogger("test"), Level.ERROR, "Test message", null, null);
+
+        // Failing GELF appender is skipped
+        assertTrue(chain.append(event, "{}".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, list.list.size());
+        assertSame(event, list.list.get(0));
+
+        // Without event, only GELF appenders are able to take the message
+        assertFalse(chain.append(null, "{}".getBytes(StandardCharsets.UTF_8)));
+
+        final Map<String, Long> statistics = new LinkedHashMap<>();
+        chain.addStatistics(statistics);
+        assertEquals(Long.valueOf(0), statistics.get("failing"));
+        assertEquals(Long.valueOf(1), statistics.get("list"));
+
+        chain.stop();
+        assertFalse(list.isStarted());
+        assertFalse(chain.append(event, "{}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static final class FailingAppender extends AbstractGelfAppender {
+
+        @Override
+        protected void appendMessage(final byte[] messageToSend) throws IOException {
+            throw new IOException("Unreachable");
+        }
+
+        @Override
+        protected void close() {
+        }
+
+    }
+
+}
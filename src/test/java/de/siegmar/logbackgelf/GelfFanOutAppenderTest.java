@@ -0,0 +1,195 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+
+public class GelfFanOutAppenderTest {
+
+    private static final String LOGGER_NAME = GelfFanOutAppenderTest.class.getCanonicalName();
+
+    private final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+    private TcpServer primary;
+    private TcpServer secondary;
+
+    @Before
+    public void before() throws IOException {
+        primary = new TcpServer();
+        secondary = new TcpServer();
+    }
+
+    @After
+    public void after() throws IOException {
+        primary.close();
+        secondary.close();
+    }
+
+    @Test
+    public void simple() throws IOException {
+        final GelfFanOutAppender appender = new GelfFanOutAppender();
+        appender.addDestination(tcpDestination("primary", primary.getPort()));
+        appender.addDestination(tcpDestination("secondary", secondary.getPort()));
+        final Logger logger = setupLogger(appender);
+
+        logger.error("Test message");
+
+        try {
+            for (final TcpServer server : Arrays.asList(primary, secondary)) {
+                final String message = server.receiveMessages(1).get(0);
+                assertTrue(message.contains("\"short_message\":\"Test message\""));
+            }
+        } finally {
+            stopLogger(logger, appender);
+        }
+    }
+
+    @Test
+    public void encodeOnce() {
+        final AtomicInteger compressions = new AtomicInteger();
+        final GelfFanOutAppender appender = new GelfFanOutAppender();
+        for (int i = 0; i < 3; i++) {
+            appender.addDestination(udpDestination(compressions));
+        }
+        final Logger logger = setupLogger(appender);
+
+        logger.error("Test message");
+        stopLogger(logger, appender);
+
+        // Compressed once for all destinations
+        assertEquals(1, compressions.get());
+    }
+
+    @Test
+    public void slowDestination() throws IOException {
+        final GelfFanOutAppender appender = new GelfFanOutAppender();
+        appender.setDestinationQueueSize(2);
+        final Logger logger;
+
+        // Server accepts the connection, but never reads
+        try (ServerSocket stalledServer = new ServerSocket(0)) {
+            stalledServer.setReceiveBufferSize(1024);
+
+            appender.addDestination(tcpDestination("stalled", stalledServer.getLocalPort()));
+            appender.addDestination(tcpDestination("primary", primary.getPort()));
+            logger = setupLogger(appender);
+
+            final char[] chars = new char[1024 * 1024];
+            Arrays.fill(chars, 'x');
+            for (int i = 0; i < 30; i++) {
+                logger.info(new String(chars));
+
+                // Not held back by the stalled destination
+                assertEquals(1, primary.receiveMessages(1).size());
+            }
+
+            assertTrue(appender.getDroppedMessages().get("stalled") > 0);
+            assertEquals(Long.valueOf(0), appender.getDroppedMessages().get("primary"));
+        }
+
+        // Stopping must not wait for the stalled destination (closed by now) forever
+        stopLogger(logger, appender);
+    }
+
+    @Test
+    public void destinationSendFailure() {
+        final GelfUdpAppender destination = new GelfUdpAppender();
+        destination.setContext(lc);
+        destination.setName("udp");
+        destination.setGraylogHost("localhost");
+        destination.setUseCompression(false);
+        destination.start();
+
+        final GelfFanOutAppender appender = new GelfFanOutAppender();
+        appender.addDestination(destination);
+        final Logger logger = setupLogger(appender);
+
+        // Exceeds the maximum number of chunks (even of the largest chunk size)
+        final char[] chars = new char[5 * 1024 * 1024];
+        Arrays.fill(chars, 'x');
+        logger.info(new String(chars));
+        stopLogger(logger, appender);
+
+        assertEquals(Long.valueOf(1), appender.getDroppedMessages().get("udp"));
+    }
+
+    private GelfTcpAppender tcpDestination(final String name, final int port) {
+        final GelfTcpAppender destination = new GelfTcpAppender();
+        destination.setContext(lc);
+        destination.setName(name);
+        destination.setGraylogHost("localhost");
+        destination.setGraylogPort(port);
+        destination.setPoolSize(1);
+        destination.setMaxRetries(0);
+        destination.start();
+        return destination;
+    }
+
+    private GelfUdpAppender udpDestination(final AtomicInteger compressions) {
+        final GelfUdpAppender destination = new GelfUdpAppender() {
+            @Override
+            protected byte[] encodeMessage(final byte[] binMessage) {
+                compressions.incrementAndGet();
+                return super.encodeMessage(binMessage);
+            }
+        };
+        destination.setContext(lc);
+        destination.setGraylogHost("localhost");
+        destination.start();
+        return destination;
+    }
+
+    private Logger setupLogger(final GelfFanOutAppender appender) {
+        final GelfLayout gelfLayout = new GelfLayout();
+        gelfLayout.setContext(lc);
+        gelfLayout.setOriginHost("localhost");
+        gelfLayout.start();
+
+        appender.setContext(lc);
+        appender.setLayout(gelfLayout);
+        appender.start();
+        assertTrue(appender.isStarted());
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME);
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+        return logger;
+    }
+
+    private static void stopLogger(final Logger logger, final GelfFanOutAppender appender) {
+        appender.stop();
+        logger.detachAppender(appender);
+    }
+
+}
@@ -0,0 +1,321 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.status.Status;
+
+public class GelfHttpAppenderTest {
+
+    private static final String LOGGER_NAME = GelfHttpAppenderTest.class.getCanonicalName();
+
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+
+    private volatile int responseStatus = 202;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    @Before
+    public void before() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        startServer(HttpServer.create(new InetSocketAddress(0), 0));
+    }
+
+    private void startServer(final HttpServer httpServer) {
+        server = httpServer;
+        server.setExecutor(executor);
+        server.createContext("/gelf", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                requests.add(new Request(exchange));
+                exchange.sendResponseHeaders(responseStatus, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void simple() throws Exception {
+        final GelfHttpAppender appender = buildAppender();
+        final Logger logger = setupLogger(appender);
+
+        final Set<Integer> clientPorts = new HashSet<>();
+        try {
+            for (int i = 1; i <= 3; i++) {
+                logger.error("Test message " + i);
+
+                final Request request = requests.poll(10, TimeUnit.SECONDS);
+                assertNotNull(request);
+                assertEquals("gzip", request.contentEncoding);
+                assertEquals("Test message " + i,
+                    request.message.get("short_message").textValue());
+                clientPorts.add(request.clientPort);
+            }
+        } finally {
+            stopLogger(logger, appender);
+        }
+
+        // All requests over the same (kept alive) connection
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void errorStatus() throws Exception {
+        responseStatus = 500;
+
+        final GelfHttpAppender appender = buildAppender();
+        final Logger logger = setupLogger(appender);
+        try {
+            logger.error("Test message");
+            assertNotNull(requests.poll(10, TimeUnit.SECONDS));
+        } finally {
+            stopLogger(logger, appender);
+        }
+
+        assertTrue(hasStatus(appender, "Unexpected HTTP status 500"));
+    }
+
+    @Test
+    public void pinnedAddress() throws Exception {
+        final GelfHttpAppender appender = buildAppender();
+        final Logger logger = setupLogger(appender);
+        try {
+            logger.error("Test message");
+
+            // Known limitation - the JDK HTTP client doesn't allow to set the Host header
+            final Request request = requests.poll(10, TimeUnit.SECONDS);
+            assertNotNull(request);
+            assertNotEquals("localhost:" + server.getAddress().getPort(), request.host);
+        } finally {
+            stopLogger(logger, appender);
+        }
+    }
+
+    @Test
+    public void unpinnedAddress() throws Exception {
+        final GelfHttpAppender appender = newAppender();
+        appender.setPinAddress(false);
+        appender.start();
+
+        final Logger logger = setupLogger(appender);
+        try {
+            logger.error("Test message");
+
+            final Request request = requests.poll(10, TimeUnit.SECONDS);
+            assertNotNull(request);
+            assertEquals("localhost:" + server.getAddress().getPort(), request.host);
+        } finally {
+            stopLogger(logger, appender);
+        }
+    }
+
+    @Test
+    public void noRequestSlot() throws Exception {
+        final GelfHttpAppender appender = newAppender();
+        appender.setMaxInFlight(0);
+        appender.setRequestTimeout(10);
+        appender.start();
+
+        final Logger logger = setupLogger(appender);
+        try {
+            logger.error("Test message");
+            assertNull(requests.poll(200, TimeUnit.MILLISECONDS));
+        } finally {
+            stopLogger(logger, appender);
+        }
+
+        assertTrue(hasStatus(appender, "no request slot available within 10 ms"));
+    }
+
+    @Test
+    public void https() throws Exception {
+        startHttpsServer();
+
+        final GelfHttpAppender appender = startHttpsAppender("localhost");
+        final Logger logger = setupLogger(appender);
+        try {
+            logger.error("Test message");
+
+            // Sent to the pinned address - verified against the certificate of the hostname
+            final Request request = requests.poll(10, TimeUnit.SECONDS);
+            assertNotNull(request);
+            assertEquals("Test message", request.message.get("short_message").textValue());
+        } finally {
+            stopLogger(logger, appender);
+        }
+    }
+
+    @Test
+    public void httpsCertificateMismatch() throws Exception {
+        startHttpsServer();
+
+        // The certificate is issued for localhost - not for the address
+        final GelfHttpAppender appender = startHttpsAppender("127.0.0.1");
+        final Logger logger = setupLogger(appender);
+        try {
+            logger.error("Test message");
+            assertNull(requests.poll(500, TimeUnit.MILLISECONDS));
+        } finally {
+            stopLogger(logger, appender);
+        }
+
+        assertTrue(hasStatus(appender, "No subject alternative names"));
+    }
+
+    private void startHttpsServer() throws IOException {
+        server.stop(0);
+
+        final HttpsServer httpsServer = HttpsServer.create(new InetSocketAddress(0), 0);
+        httpsServer.setHttpsConfigurator(new HttpsConfigurator(LocalhostTls.sslContext()));
+        startServer(httpsServer);
+    }
+
+    private GelfHttpAppender startHttpsAppender(final String graylogHost) {
+        final GelfHttpAppender appender = newAppender();
+        appender.setGraylogHost(graylogHost);
+        appender.setUseTls(true);
+
+        // The appender trusts the certificates trusted by the default SSLSocketFactory
+        final SSLSocketFactory defaultSocketFactory =
+            HttpsURLConnection.getDefaultSSLSocketFactory();
+        HttpsURLConnection.setDefaultSSLSocketFactory(
+            LocalhostTls.sslContext().getSocketFactory());
+        try {
+            appender.start();
+        } finally {
+            HttpsURLConnection.setDefaultSSLSocketFactory(defaultSocketFactory);
+        }
+        return appender;
+    }
+
+    private GelfHttpAppender buildAppender() {
+        final GelfHttpAppender appender = newAppender();
+        appender.start();
+        return appender;
+    }
+
+    private GelfHttpAppender newAppender() {
+        final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        final GelfLayout gelfLayout = new GelfLayout();
+        gelfLayout.setContext(lc);
+        gelfLayout.setOriginHost("localhost");
+        gelfLayout.start();
+
+        final GelfHttpAppender appender = new GelfHttpAppender();
+        appender.setContext(lc);
+        appender.setLayout(gelfLayout);
+        appender.setGraylogHost("localhost");
+        appender.setGraylogPort(server.getAddress().getPort());
+        return appender;
+    }
+
+    private static Logger setupLogger(final GelfHttpAppender appender) {
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME);
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+        return logger;
+    }
+
+    private static void stopLogger(final Logger logger, final GelfHttpAppender appender) {
+        appender.stop();
+        logger.detachAppender(appender);
+    }
+
+    private static boolean hasStatus(final GelfHttpAppender appender, final String text) {
+        for (final Status status
+            : appender.getContext().getStatusManager().getCopyOfStatusList()) {
+            if (status.getOrigin() != appender) {
+                continue;
+            }
+            if (status.getMessage().contains(text) || status.getThrowable() != null
+                && String.valueOf(status.getThrowable().getMessage()).contains(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Request {
+
+        private final String host;
+        private final String contentEncoding;
+        private final int clientPort;
+        private final JsonNode message;
+
+        Request(final HttpExchange exchange) throws IOException {
+            host = exchange.getRequestHeaders().getFirst("Host");
+            contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            clientPort = exchange.getRemoteAddress().getPort();
+
+            try (InputStream in = "gzip".equals(contentEncoding)
+                ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+                message = new ObjectMapper().readTree(ByteStreams.toByteArray(in));
+            }
+        }
+
+    }
+
+}
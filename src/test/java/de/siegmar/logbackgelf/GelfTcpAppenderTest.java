@@ -20,49 +20,67 @@
 package de.siegmar.logbackgelf;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.concurrent.Semaphore;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.io.ByteStreams;
 
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.status.Status;
 
 public class GelfTcpAppenderTest {
 
     private static final String LOGGER_NAME = GelfTcpAppenderTest.class.getCanonicalName();
 
-    private TcpServerRunnable server;
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private TcpServer server;
 
     @Before
-    public void before() throws IOException, InterruptedException {
-        server = new TcpServerRunnable();
-        final Thread serverThread = new Thread(server);
-        serverThread.start();
+    public void before() throws IOException {
+        server = new TcpServer();
+    }
+
+    @After
+    public void after() throws IOException {
+        server.close();
     }
 
     @Test
     public void simple() throws IOException {
-        final Logger logger = setupLogger();
+        final Logger logger = setupLogger(null, server.getPort());
 
         logger.error("Test message");
 
+        final JsonNode jsonNode = parse(server.receiveMessages(1).get(0));
         stopLogger(logger);
 
-        final JsonNode jsonNode = receiveMessage();
         assertEquals("1.1", jsonNode.get("version").textValue());
         assertEquals("localhost", jsonNode.get("host").textValue());
         assertEquals("Test message", jsonNode.get("short_message").textValue());
@@ -72,86 +90,435 @@ public class GelfTcpAppenderTest {
         assertEquals(LOGGER_NAME, jsonNode.get("_logger_name").textValue());
     }
 
-    private Logger setupLogger() {
+    @Test
+    public void encoderThreads() throws IOException {
         final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+        final GelfTcpAppender appender = new GelfTcpAppender();
+        appender.setContext(lc);
+        appender.setGraylogHost("localhost");
+        appender.setGraylogPort(server.getPort());
+        appender.setPoolSize(1);
+        appender.setEncoderThreads(4);
+        appender.start();
 
-        final GelfLayout gelfLayout = new GelfLayout();
-        gelfLayout.setContext(lc);
-        gelfLayout.setOriginHost("localhost");
-        gelfLayout.start();
-
-        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME);
-        logger.addAppender(buildAppender(lc, gelfLayout));
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME + ".encoder");
+        logger.addAppender(appender);
         logger.setAdditive(false);
 
-        return logger;
-    }
+        for (int i = 0; i < 200; i++) {
+            logger.info("Test message " + i);
+        }
 
-    private GelfTcpAppender buildAppender(final LoggerContext lc, final GelfLayout gelfLayout) {
-        final GelfTcpAppender gelfAppender = new GelfTcpAppender();
-        gelfAppender.setContext(lc);
-        gelfAppender.setName("GELF");
-        gelfAppender.setLayout(gelfLayout);
-        gelfAppender.setGraylogHost("localhost");
-        gelfAppender.setGraylogPort(server.getPort());
-        gelfAppender.start();
-        return gelfAppender;
-    }
+        // Encoded in parallel - but sent in order (via a single connection)
+        final List<String> messages = server.receiveMessages(200);
+        appender.stop();
+        logger.detachAppender(appender);
 
-    private JsonNode receiveMessage() throws IOException {
-        return new ObjectMapper().readTree(server.getReceivedData());
+        for (int i = 0; i < 200; i++) {
+            assertEquals("Test message " + i,
+                parse(messages.get(i)).get("short_message").textValue());
+        }
     }
 
-    private void stopLogger(final Logger logger) {
-        final GelfTcpAppender gelfAppender = (GelfTcpAppender) logger.getAppender("GELF");
-        gelfAppender.stop();
+    @Test
+    public void spoolAndReplay() throws IOException {
+        final String spoolDirectory = tmp.newFolder().getPath();
+
+        // Server unreachable - messages are spooled
+        final Logger offlineLogger = setupLogger(spoolDirectory, unusedPort());
+        offlineLogger.error("Spooled message 1");
+        offlineLogger.error("Spooled message 2");
+        stopLogger(offlineLogger);
+
+        // Server reachable again - spooled messages are replayed before new messages
+        final Logger logger = setupLogger(spoolDirectory, server.getPort());
+        logger.error("Test message");
+
+        final List<String> messages = server.receiveMessages(3);
+        stopLogger(logger);
+
+        assertEquals("Spooled message 1", parse(messages.get(0)).get("short_message").textValue());
+        assertEquals("Spooled message 2", parse(messages.get(1)).get("short_message").textValue());
+        assertEquals("Test message", parse(messages.get(2)).get("short_message").textValue());
     }
 
-    private static final class TcpServerRunnable implements Runnable {
+    @Test
+    public void spoolFailure() throws IOException {
+        // Spool directory can't be created - a file is in the way
+        final String spoolDirectory = tmp.newFile().getPath();
 
-        private final ServerSocket server;
-        private final Semaphore semaphore = new Semaphore(1);
-        private byte[] receivedData;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+            final GelfLayout gelfLayout = new GelfLayout();
+            gelfLayout.setContext(lc);
+            final GelfTcpAppender appender = buildAppender(lc, gelfLayout, spoolDirectory,
+                serverSocket.getLocalPort());
+            assertFalse(appender.isStarted());
 
-        TcpServerRunnable() throws IOException, InterruptedException {
-            server = new ServerSocket(0);
-            semaphore.acquire();
+            // No connections are opened in background by the failed start
+            serverSocket.setSoTimeout(500);
+            try {
+                serverSocket.accept().close();
+                fail("Connection opened");
+            } catch (final SocketTimeoutException e) {
+                // expected
+            }
         }
+    }
 
-        int getPort() {
-            return server.getLocalPort();
+    @Test
+    public void writeTimeout() throws Exception {
+        // Server accepts the connection, but never reads
+        try (ServerSocket stalledServer = new ServerSocket(0)) {
+            stalledServer.setReceiveBufferSize(1024);
+
+            final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+            final GelfTcpAppender appender = new GelfTcpAppender();
+            appender.setContext(lc);
+            appender.setGraylogHost("localhost");
+            appender.setGraylogPort(stalledServer.getLocalPort());
+            appender.setPoolSize(1);
+            appender.setMaxRetries(0);
+            appender.setWriteTimeout(200);
+            appender.start();
+
+            final Socket accepted = stalledServer.accept();
+
+            final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME + ".stalled");
+            logger.addAppender(appender);
+            logger.setAdditive(false);
+
+            final String message = largeMessage();
+
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                final Future<Void> logging = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = 0; i < 10; i++) {
+                            logger.error(message);
+                        }
+                        return null;
+                    }
+                });
+
+                // Without write timeout, the logging thread would block forever
+                logging.get(10, TimeUnit.SECONDS);
+            } finally {
+                executor.shutdownNow();
+                appender.stop();
+                logger.detachAppender(appender);
+                accepted.close();
+            }
+
+            assertTrue(hasStatus(lc, "Write timed out"));
         }
+    }
+
+    @Test
+    public void priorityConnections() throws Exception {
+        // Server accepts the connections, but never reads
+        try (ServerSocket stalledServer = new ServerSocket(0)) {
+            stalledServer.setReceiveBufferSize(1024);
+
+            final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+            final GelfTcpAppender appender = new GelfTcpAppender();
+            appender.setContext(lc);
+            appender.setGraylogHost("localhost");
+            appender.setGraylogPort(stalledServer.getLocalPort());
+            appender.setPoolSize(1);
+            appender.setPriorityPoolSize(1);
+            appender.setPriorityLevel("ERROR");
+            appender.setMaxRetries(0);
+            appender.setWriteTimeout(0);
+            appender.start();
 
-        byte[] getReceivedData() {
+            final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME + ".priority");
+            logger.addAppender(appender);
+            logger.setAdditive(false);
+
+            final ExecutorService executor = Executors.newFixedThreadPool(2);
             try {
-                if (!semaphore.tryAcquire(10, TimeUnit.SECONDS)) {
-                    throw new IllegalStateException("Couldn't acquire semaphore!");
+                // Low level events saturate the regular connection (and the socket buffers)
+                for (int i = 0; i < 2; i++) {
+                    executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            for (int j = 0; j < 16; j++) {
+                                logger.info(largeMessage());
+                            }
+                            return null;
+                        }
+                    });
                 }
-            } catch (final InterruptedException e) {
-                throw new IllegalStateException(e);
+                awaitWaiting(appender);
+
+                // ... but don't delay high level events
+                final long start = System.nanoTime();
+                logger.error("Test message");
+                final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue("Took " + elapsed + " ms", elapsed < 1000);
+                assertEquals(0, appender.getPriorityPoolStatistics().getWaitCount());
+            } finally {
+                executor.shutdownNow();
+                appender.stop();
+                logger.detachAppender(appender);
             }
-            return receivedData;
         }
+    }
 
-        @Override
-        public void run() {
-            try (Socket socket = server.accept()) {
-                try (DataInputStream in = new DataInputStream(socket.getInputStream())) {
-                    receivedData = ByteStreams.toByteArray(in);
-                }
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
+    @Test
+    public void circuitBreaker() throws IOException {
+        final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+        final GelfTcpAppender appender = new GelfTcpAppender();
+        appender.setContext(lc);
+        appender.setGraylogHost("localhost");
+        appender.setGraylogPort(unusedPort());
+        appender.setRetryDelay(1000);
+        appender.setCircuitBreakerThreshold(2);
+        appender.start();
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME + ".unreachable");
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+
+        final long start = System.nanoTime();
+        try {
+            for (int i = 0; i < 100; i++) {
+                logger.error("Test message");
             }
+        } finally {
+            appender.stop();
+        }
 
-            try {
-                server.close();
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
+        // One retry delay until the circuit opens - instead of two delays for every message
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Took " + elapsed + " ms", elapsed < 5000);
+
+        int opened = 0;
+        for (final Status status : lc.getStatusManager().getCopyOfStatusList()) {
+            if (status.getOrigin() == appender
+                && status.getMessage().startsWith("Circuit opened")) {
+                opened++;
+            }
+        }
+        assertEquals(1, opened);
+    }
+
+    @Test
+    public void poolTimeout() throws Exception {
+        final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+        final GelfTcpAppender appender = new GelfTcpAppender();
+        appender.setContext(lc);
+        appender.setGraylogHost("localhost");
+        appender.setGraylogPort(server.getPort());
+        appender.setPoolSize(1);
+        appender.setPoolMaxWaitTime(1);
+        appender.setMaxRetries(0);
+        appender.setCircuitBreakerThreshold(1);
+        appender.start();
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME + ".saturated");
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+
+        // More logging threads than connections - on a healthy server
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int j = 0; j < 4; j++) {
+                            logger.info(largeMessage());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
             }
+        } finally {
+            executor.shutdownNow();
+            appender.stop();
+            logger.detachAppender(appender);
+        }
+
+        assertTrue(countStatus(lc, appender, "no connection available") > 0);
+
+        // Pool timeouts are caused by local overload - they don't open the circuit
+        assertEquals(0, countStatus(lc, appender, "Circuit opened"));
+    }
+
+    @Test
+    public void dropSummaryAfterRecovery() throws Exception {
+        final int port = unusedPort();
+
+        final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+        final GelfTcpAppender appender = new GelfTcpAppender();
+        appender.setContext(lc);
+        appender.setName("GELF");
+        appender.setGraylogHost("localhost");
+        appender.setGraylogPort(port);
+        appender.setMaxRetries(0);
+        appender.setRetryDelay(50);
+        appender.setCircuitBreakerMaxBackoff(100);
+        appender.setDropSummaryInterval(100);
+        appender.start();
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME + ".recovery");
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+
+        TcpServer recoveredServer = null;
+        try {
+            // Dropped while the server is down - so are the summaries of these drops
+            for (int i = 0; i < 3; i++) {
+                logger.error("Test message");
+            }
+            Thread.sleep(500);
+
+            recoveredServer = new TcpServer(new ServerSocket(port));
+            final JsonNode summary = parse(recoveredServer.receiveMessages(1).get(0));
+            assertEquals("GELF_DROP_SUMMARY", summary.get("_marker").textValue());
+            assertEquals("3", summary.get("_dropped_send_failure").textValue());
+        } finally {
+            appender.stop();
+            logger.detachAppender(appender);
+            if (recoveredServer != null) {
+                recoveredServer.close();
+            }
+        }
+    }
+
+    @Test
+    public void fallback() throws IOException {
+        final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        final GelfTcpAppender secondary = new GelfTcpAppender();
+        secondary.setContext(lc);
+        secondary.setName("secondary");
+        secondary.setGraylogHost("localhost");
+        secondary.setGraylogPort(server.getPort());
+        secondary.start();
+
+        final GelfTcpAppender appender = new GelfTcpAppender();
+        appender.setContext(lc);
+        appender.setGraylogHost("localhost");
+        appender.setGraylogPort(unusedPort());
+        appender.addFallbackAppender(secondary);
+        appender.start();
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME + ".fallback");
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+
+        final long start = System.nanoTime();
+        try {
+            logger.error("Test message");
+
+            final JsonNode jsonNode = parse(server.receiveMessages(1).get(0));
+            assertEquals("Test message", jsonNode.get("short_message").textValue());
+        } finally {
+            appender.stop();
+        }
+
+        // No retries (and retry delays) if a fallback is available
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Took " + elapsed + " ms", elapsed < 2000);
+
+        final Map<String, Long> statistics = appender.getTransportStatistics();
+        assertEquals(Long.valueOf(0), statistics.get("tcp"));
+        assertEquals(Long.valueOf(1), statistics.get("secondary"));
+        assertEquals(Long.valueOf(0), statistics.get("dropped"));
+
+        // Stopped along with the appender
+        assertFalse(secondary.isStarted());
+    }
+
+    private static void awaitWaiting(final GelfTcpAppender appender)
+        throws InterruptedException {
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (appender.getPoolStatistics().getWaiting() == 0) {
+            assertTrue("No event waiting for a connection", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static String largeMessage() {
+        final char[] chars = new char[1024 * 1024];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
 
-            semaphore.release();
+    private static boolean hasStatus(final LoggerContext lc, final String text) {
+        for (final Status status : lc.getStatusManager().getCopyOfStatusList()) {
+            if (status.getThrowable() != null
+                && String.valueOf(status.getThrowable().getMessage()).contains(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int countStatus(final LoggerContext lc, final GelfTcpAppender appender,
+                                   final String text) {
+        int count = 0;
+        for (final Status status : lc.getStatusManager().getCopyOfStatusList()) {
+            if (status.getOrigin() == appender && status.getMessage().contains(text)) {
+                count++;
+            }
         }
+        return count;
+    }
+
+    private static int unusedPort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    private Logger setupLogger(final String spoolDirectory, final int port) {
+        final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        final GelfLayout gelfLayout = new GelfLayout();
+        gelfLayout.setContext(lc);
+        gelfLayout.setOriginHost("localhost");
+        gelfLayout.start();
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME);
+        logger.addAppender(buildAppender(lc, gelfLayout, spoolDirectory, port));
+        logger.setAdditive(false);
+
+        return logger;
+    }
+
+    private GelfTcpAppender buildAppender(final LoggerContext lc, final GelfLayout gelfLayout,
+                                          final String spoolDirectory, final int port) {
+        final GelfTcpAppender gelfAppender = new GelfTcpAppender();
+        gelfAppender.setContext(lc);
+        gelfAppender.setName("GELF");
+        gelfAppender.setLayout(gelfLayout);
+        gelfAppender.setGraylogHost("localhost");
+        gelfAppender.setGraylogPort(port);
+        gelfAppender.setSpoolDirectory(spoolDirectory);
+        gelfAppender.setRetryDelay(100);
+        gelfAppender.setPoolSize(1);
+        gelfAppender.start();
+        return gelfAppender;
+    }
 
+    private static JsonNode parse(final String message) throws IOException {
+        return new ObjectMapper().readTree(message);
+    }
+
+    private void stopLogger(final Logger logger) {
+        final GelfTcpAppender gelfAppender = (GelfTcpAppender) logger.getAppender("GELF");
+        gelfAppender.stop();
+        logger.detachAppender(gelfAppender);
     }
 
 }
@@ -19,26 +19,28 @@
 
 package de.siegmar.logbackgelf;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
-import java.io.DataInputStream;
 import java.io.IOException;
-import java.net.Socket;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
 
-import javax.net.ssl.SSLServerSocket;
 import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.io.ByteStreams;
 
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
@@ -46,8 +48,9 @@ import ch.qos.logback.classic.LoggerContext;
 public class GelfTcpTlsAppenderTest {
 
     private static final String LOGGER_NAME = GelfTcpTlsAppenderTest.class.getCanonicalName();
+    private static final int HANDSHAKES = 5;
 
-    private TcpServerRunnable server;
+    private TcpServer server;
 
     public GelfTcpTlsAppenderTest() {
         final String mySrvKeystore =
@@ -57,10 +60,13 @@ public class GelfTcpTlsAppenderTest {
     }
 
     @Before
-    public void before() throws IOException, InterruptedException {
-        server = new TcpServerRunnable();
-        final Thread serverThread = new Thread(server);
-        serverThread.start();
+    public void before() throws IOException {
+        server = new TcpServer(SSLServerSocketFactory.getDefault().createServerSocket(0));
+    }
+
+    @After
+    public void after() throws IOException {
+        server.close();
     }
 
     @Test
@@ -69,9 +75,9 @@ public class GelfTcpTlsAppenderTest {
 
         logger.error("Test message");
 
+        final JsonNode jsonNode = receiveMessage();
         stopLogger(logger);
 
-        final JsonNode jsonNode = receiveMessage();
         assertEquals("1.1", jsonNode.get("version").textValue());
         assertEquals("localhost", jsonNode.get("host").textValue());
         assertEquals("Test message", jsonNode.get("short_message").textValue());
@@ -81,6 +87,40 @@ public class GelfTcpTlsAppenderTest {
         assertEquals(LOGGER_NAME, jsonNode.get("_logger_name").textValue());
     }
 
+    @Test
+    public void sessionResumption() throws IOException {
+        final GelfTcpTlsAppender appender = new GelfTcpTlsAppender();
+        appender.setContext((LoggerContext) LoggerFactory.getILoggerFactory());
+        appender.setTrustAllCertificates(true);
+
+        // TLS 1.2 - session ids of TLS 1.3 don't reveal resumption
+        appender.setTlsProtocols("TLSv1.2");
+
+        // One SSLContext for all connections - the session of the first one is resumed
+        final SSLSocketFactory socketFactory = appender.initSocketFactory();
+        final SSLSession firstSession = handshake(socketFactory);
+        for (int i = 0; i < HANDSHAKES; i++) {
+            final SSLSession session = handshake(socketFactory);
+            assertArrayEquals(firstSession.getId(), session.getId());
+            assertEquals(firstSession.getCreationTime(), session.getCreationTime());
+        }
+
+        // One SSLContext per connection (former behaviour) - a full handshake each time
+        for (int i = 0; i < HANDSHAKES; i++) {
+            final SSLSession session = handshake(appender.initSocketFactory());
+            assertFalse(Arrays.equals(firstSession.getId(), session.getId()));
+        }
+    }
+
+    private SSLSession handshake(final SSLSocketFactory socketFactory) throws IOException {
+        try (SSLSocket socket = (SSLSocket) socketFactory.createSocket()) {
+            socket.connect(new InetSocketAddress("localhost", server.getPort()));
+            socket.startHandshake();
+            assertEquals("TLSv1.2", socket.getSession().getProtocol());
+            return socket.getSession();
+        }
+    }
+
     private Logger setupLogger() {
         final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
 
@@ -109,7 +149,7 @@ public class GelfTcpTlsAppenderTest {
     }
 
     private JsonNode receiveMessage() throws IOException {
-        return new ObjectMapper().readTree(server.getReceivedData());
+        return new ObjectMapper().readTree(server.receiveMessages(1).get(0));
     }
 
     private void stopLogger(final Logger logger) {
@@ -117,53 +157,4 @@ public class GelfTcpTlsAppenderTest {
         gelfAppender.stop();
     }
 
-    private static final class TcpServerRunnable implements Runnable {
-
-        private final SSLServerSocket server;
-        private final Semaphore semaphore = new Semaphore(1);
-        private byte[] receivedData;
-
-        TcpServerRunnable() throws IOException, InterruptedException {
-            final SSLServerSocketFactory sslserversocketfactory =
-                (SSLServerSocketFactory) SSLServerSocketFactory.getDefault();
-            server = (SSLServerSocket) sslserversocketfactory.createServerSocket(0);
-            semaphore.acquire();
-        }
-
-        int getPort() {
-            return server.getLocalPort();
-        }
-
-        byte[] getReceivedData() {
-            try {
-                if (!semaphore.tryAcquire(10, TimeUnit.SECONDS)) {
-                    throw new IllegalStateException("Couldn't acquire semaphore!");
-                }
-            } catch (final InterruptedException e) {
-                throw new IllegalStateException(e);
-            }
-            return receivedData;
-        }
-
-        @Override
-        public void run() {
-            try (Socket socket = server.accept()) {
-                try (DataInputStream in = new DataInputStream(socket.getInputStream())) {
-                    receivedData = ByteStreams.toByteArray(in);
-                }
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
-            }
-
-            try {
-                server.close();
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
-            }
-
-            semaphore.release();
-        }
-
-    }
-
 }
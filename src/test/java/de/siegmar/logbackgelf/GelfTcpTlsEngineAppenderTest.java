@@ -0,0 +1,170 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.net.ssl.SSLServerSocketFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+
+public class GelfTcpTlsEngineAppenderTest {
+
+    private static final String LOGGER_NAME =
+        GelfTcpTlsEngineAppenderTest.class.getCanonicalName();
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private TcpServer server;
+
+    public GelfTcpTlsEngineAppenderTest() {
+        final String mySrvKeystore =
+            GelfTcpTlsEngineAppenderTest.class.getResource("/mySrvKeystore").getFile();
+        System.setProperty("javax.net.ssl.keyStore", mySrvKeystore);
+        System.setProperty("javax.net.ssl.keyStorePassword", "secret");
+    }
+
+    @Before
+    public void before() throws IOException {
+        server = new TcpServer(SSLServerSocketFactory.getDefault().createServerSocket(0));
+    }
+
+    @After
+    public void after() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void simple() throws IOException {
+        final Logger logger = setupLogger();
+
+        logger.error("Test message");
+
+        final JsonNode jsonNode = receiveMessage();
+        stopLogger(logger);
+
+        assertEquals("1.1", jsonNode.get("version").textValue());
+        assertEquals("localhost", jsonNode.get("host").textValue());
+        assertEquals("Test message", jsonNode.get("short_message").textValue());
+        assertEquals(LOGGER_NAME, jsonNode.get("_logger_name").textValue());
+    }
+
+    @Test
+    public void largeMessage() throws IOException {
+        final Logger logger = setupLogger();
+
+        // Spans multiple TLS records
+        final char[] chars = new char[100_000];
+        Arrays.fill(chars, 'x');
+        final String message = new String(chars);
+        logger.error(message);
+
+        final JsonNode jsonNode = receiveMessage();
+        stopLogger(logger);
+
+        assertEquals(message, jsonNode.get("short_message").textValue());
+    }
+
+    @Test
+    public void bulkTransfer() throws IOException {
+        final int frames = 10_000;
+        final Path file = tmp.newFile().toPath();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < frames; i++) {
+                channel.write(StandardCharsets.UTF_8.encode("message " + i + "\0"));
+            }
+        }
+
+        final AbstractTcpConnection connection =
+            buildAppender().initConnectionFactory().newInstance();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            connection.write(channel, 0, channel.size());
+
+            // Frames are packed into records without gaps and in order
+            final List<String> messages = server.receiveMessages(frames);
+            for (int i = 0; i < frames; i++) {
+                assertEquals("message " + i, messages.get(i));
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private Logger setupLogger() {
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME);
+        final GelfTcpTlsEngineAppender appender = buildAppender();
+        appender.start();
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+
+        return logger;
+    }
+
+    private GelfTcpTlsEngineAppender buildAppender() {
+        final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        final GelfLayout gelfLayout = new GelfLayout();
+        gelfLayout.setContext(lc);
+        gelfLayout.setOriginHost("localhost");
+        gelfLayout.start();
+
+        final GelfTcpTlsEngineAppender gelfAppender = new GelfTcpTlsEngineAppender();
+        gelfAppender.setContext(lc);
+        gelfAppender.setName("GELF");
+        gelfAppender.setLayout(gelfLayout);
+        gelfAppender.setGraylogHost("localhost");
+        gelfAppender.setGraylogPort(server.getPort());
+        gelfAppender.setTrustAllCertificates(true);
+        return gelfAppender;
+    }
+
+    private JsonNode receiveMessage() throws IOException {
+        return new ObjectMapper().readTree(server.receiveMessages(1).get(0));
+    }
+
+    private void stopLogger(final Logger logger) {
+        final GelfTcpTlsEngineAppender gelfAppender =
+            (GelfTcpTlsEngineAppender) logger.getAppender("GELF");
+        gelfAppender.stop();
+        logger.detachAppender(gelfAppender);
+    }
+
+}
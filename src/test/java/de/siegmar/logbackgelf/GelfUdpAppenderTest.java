@@ -20,11 +20,13 @@
 package de.siegmar.logbackgelf;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.util.Arrays;
@@ -32,6 +34,10 @@ import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.InflaterOutputStream;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.LoggerFactory;
@@ -91,6 +97,33 @@ public class GelfUdpAppenderTest {
         assertEquals(LOGGER_NAME, jsonNode.get("_logger_name").textValue());
     }
 
+    @Test
+    public void metrics() throws IOException, JMException {
+        // Appenders of other tests must not occupy the MBean name
+        ((Logger) LoggerFactory.getLogger(LOGGER_NAME)).detachAndStopAllAppenders();
+
+        final Logger logger = setupLogger(true);
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = ObjectName.getInstance(
+            "de.siegmar.logbackgelf:type=GelfAppender,context="
+            + ObjectName.quote(logger.getLoggerContext().getName()) + ",name=\"GELF\"");
+
+        logger.error("Test message");
+        receiveCompressedMessage();
+
+        assertEquals(1L, mBeanServer.getAttribute(name, "Events"));
+        assertEquals(1L, mBeanServer.getAttribute(name, "UdpChunks"));
+        assertEquals(0L, mBeanServer.getAttribute(name, "SendErrors"));
+        final long bytesBefore = (Long) mBeanServer.getAttribute(name, "BytesBeforeCompression");
+        final long bytesAfter = (Long) mBeanServer.getAttribute(name, "BytesAfterCompression");
+        assertTrue(bytesAfter > 0 && bytesAfter < bytesBefore);
+        assertTrue((Long) mBeanServer.getAttribute(name, "LayoutTimeMax") > 0);
+
+        logger.detachAndStopAllAppenders();
+
+        assertFalse(mBeanServer.isRegistered(name));
+    }
+
     private Logger setupLogger(final boolean useCompression) {
         final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
 
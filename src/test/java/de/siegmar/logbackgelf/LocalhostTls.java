@@ -0,0 +1,68 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * TLS material for tests - a self-signed certificate for localhost and graylog.example.com.
+ */
+final class LocalhostTls {
+
+    private static final char[] PASSWORD = "secret".toCharArray();
+
+    private LocalhostTls() {
+    }
+
+    /**
+     * @return a new SSLContext using the certificate as key and as the only trusted one - for
+     *     clients and servers.
+     */
+    static SSLContext sslContext() {
+        try {
+            final KeyStore keyStore = KeyStore.getInstance("JKS");
+            try (InputStream in = LocalhostTls.class.getResourceAsStream("/localhostKeystore")) {
+                keyStore.load(in, PASSWORD);
+            }
+
+            final KeyManagerFactory kmf =
+                KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(keyStore, PASSWORD);
+
+            final TrustManagerFactory tmf =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(keyStore);
+
+            final SSLContext context = SSLContext.getInstance("TLS");
+            context.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+            return context;
+        } catch (final GeneralSecurityException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void burst() {
+        final RateLimiter limiter = new RateLimiter(10, 3, 100);
+
+        assertTrue(limiter.tryAcquire("foo", 0));
+        assertTrue(limiter.tryAcquire("foo", 0));
+        assertTrue(limiter.tryAcquire("foo", 0));
+        assertFalse(limiter.tryAcquire("foo", 0));
+    }
+
+    @Test
+    public void refill() {
+        final RateLimiter limiter = new RateLimiter(10, 1, 100);
+
+        assertTrue(limiter.tryAcquire("foo", 0));
+        assertFalse(limiter.tryAcquire("foo", SECOND / 20));
+        assertTrue(limiter.tryAcquire("foo", SECOND / 10));
+        assertFalse(limiter.tryAcquire("foo", SECOND / 10));
+
+        // Unused time doesn't accumulate beyond the burst
+        assertTrue(limiter.tryAcquire("foo", 10 * SECOND));
+        assertFalse(limiter.tryAcquire("foo", 10 * SECOND));
+    }
+
+    @Test
+    public void nanoTimeOverflow() {
+        final RateLimiter limiter = new RateLimiter(10, 1, 100);
+
+        assertTrue(limiter.tryAcquire("foo", Long.MAX_VALUE - SECOND / 20));
+        assertFalse(limiter.tryAcquire("foo", Long.MAX_VALUE));
+        assertTrue(limiter.tryAcquire("foo", Long.MIN_VALUE + SECOND / 10));
+    }
+
+    @Test
+    public void independentKeys() {
+        final RateLimiter limiter = new RateLimiter(1, 1, 100);
+
+        assertTrue(limiter.tryAcquire("foo", 0));
+        assertFalse(limiter.tryAcquire("foo", 0));
+        assertTrue(limiter.tryAcquire("bar", 0));
+    }
+
+    @Test
+    public void maxKeys() {
+        final RateLimiter limiter = new RateLimiter(1, 1, 1);
+        final long now = System.nanoTime();
+
+        assertTrue(limiter.tryAcquire("foo", now));
+
+        // All further keys share one bucket
+        assertTrue(limiter.tryAcquire("bar", now));
+        assertFalse(limiter.tryAcquire("baz", now));
+        assertFalse(limiter.tryAcquire("foo", now));
+    }
+
+    @Test
+    public void appender() throws IOException {
+        final RecordingAppender appender = start(null);
+
+        for (int i = 0; i < 5; i++) {
+            appender.doAppend(event("foo", Collections.<String, String>emptyMap()));
+        }
+        appender.doAppend(event("bar", Collections.<String, String>emptyMap()));
+        appender.stop();
+
+        assertEquals(3, appender.messages.size());
+        assertEquals(1, appender.priorityMessages.size());
+        assertEquals("3", new ObjectMapper().readTree(appender.priorityMessages.get(0))
+            .get("_dropped_rate_limited").textValue());
+    }
+
+    @Test
+    public void mdcKey() {
+        final RecordingAppender appender = start("tenant");
+
+        for (int i = 0; i < 3; i++) {
+            appender.doAppend(event("foo", Collections.singletonMap("tenant", "a")));
+            appender.doAppend(event("bar", Collections.singletonMap("tenant", "b")));
+        }
+
+        // Without MDC value, the logger name is used
+        appender.doAppend(event("foo", Collections.<String, String>emptyMap()));
+        appender.stop();
+
+        assertEquals(5, appender.messages.size());
+    }
+
+    private static RecordingAppender start(final String rateLimitMdcKey) {
+        final RecordingAppender appender = new RecordingAppender();
+        appender.setContext(new LoggerContext());
+        appender.setName("GELF");
+        appender.setGraylogHost("localhost");
+        appender.setMetricsEnabled(false);
+        appender.setRateLimit(1);
+        appender.setRateLimitBurst(2);
+        appender.setRateLimitMdcKey(rateLimitMdcKey);
+        appender.start();
+        assertTrue(appender.isStarted());
+        return appender;
+    }
+
+    private static LoggingEvent event(final String loggerName,
+                                      final Map<String, String> mdc) {
+        final LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.INFO);
+        event.setLoggerName(loggerName);
+        event.setMessage("message");
+        event.setTimeStamp(System.currentTimeMillis());
+        event.setMDCPropertyMap(mdc);
+        return event;
+    }
+
+    private static final class RecordingAppender extends AbstractGelfAppender {
+
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private final List<String> priorityMessages = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected void appendMessage(final byte[] messageToSend) {
+            messages.add(new String(messageToSend, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        protected boolean appendPriorityMessage(final byte[] messageToSend) {
+            priorityMessages.add(new String(messageToSend, StandardCharsets.UTF_8));
+            return true;
+        }
+
+        @Override
+        protected void close() {
+        }
+
+    }
+
+}
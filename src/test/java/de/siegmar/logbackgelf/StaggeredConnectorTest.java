@@ -0,0 +1,141 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class StaggeredConnectorTest {
+
+    private final AddressResolver resolver = new AddressResolver("localhost");
+
+    @Test
+    public void blackholedAddress() throws IOException {
+        final List<Socket> backlog = new ArrayList<>();
+        try (ServerSocket blackhole = blackhole(backlog);
+             ServerSocket server = new ServerSocket(blackhole.getLocalPort(), 50,
+                 InetAddress.getByName("127.0.0.1"))) {
+
+            final long start = System.nanoTime();
+
+            try (SocketChannel channel = StaggeredConnector.connect(
+                addresses("127.0.0.2", "127.0.0.1"), server.getLocalPort(), 100, 15_000,
+                resolver)) {
+
+                // Bound by the attempt delay - not by the connect timeout
+                final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue("Took " + elapsed + " ms", elapsed < 2000);
+
+                assertEquals(InetAddress.getByName("127.0.0.1"),
+                    ((InetSocketAddress) channel.getRemoteAddress()).getAddress());
+                assertTrue(channel.isBlocking());
+            }
+        } finally {
+            close(backlog);
+        }
+    }
+
+    @Test
+    public void allRefused() throws IOException {
+        final int port;
+        try (ServerSocket server = new ServerSocket(0)) {
+            port = server.getLocalPort();
+        }
+
+        try {
+            StaggeredConnector.connect(addresses("127.0.0.1", "127.0.0.2"), port, 1000,
+                15_000, resolver);
+            fail("Expected ConnectException");
+        } catch (final ConnectException e) {
+            // expected - without waiting for the attempt delay
+        }
+    }
+
+    @Test
+    public void timeout() throws IOException {
+        final List<Socket> backlog = new ArrayList<>();
+        try (ServerSocket blackhole = blackhole(backlog)) {
+            final long start = System.nanoTime();
+            try {
+                StaggeredConnector.connect(addresses("127.0.0.2"), blackhole.getLocalPort(), 100,
+                    300, resolver);
+                fail("Expected SocketTimeoutException");
+            } catch (final SocketTimeoutException e) {
+                final long elapsed =
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue("Took " + elapsed + " ms", elapsed >= 250 && elapsed < 2000);
+            }
+        } finally {
+            close(backlog);
+        }
+    }
+
+    /**
+     * Creates a server that doesn't answer connection attempts, by filling its backlog.
+     */
+    private static ServerSocket blackhole(final List<Socket> backlog) throws IOException {
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.2"));
+        for (int i = 0; i < 10; i++) {
+            final Socket socket = new Socket();
+            backlog.add(socket);
+            try {
+                socket.connect(server.getLocalSocketAddress(), 200);
+            } catch (final SocketTimeoutException e) {
+                return server;
+            }
+        }
+
+        server.close();
+        throw new IllegalStateException("Couldn't fill backlog");
+    }
+
+    private static void close(final List<Socket> sockets) throws IOException {
+        for (final Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    private static List<InetAddress> addresses(final String... ips)
+        throws UnknownHostException {
+
+        final List<InetAddress> addresses = new ArrayList<>(ips.length);
+        for (final String ip : ips) {
+            addresses.add(InetAddress.getByName(ip));
+        }
+        return addresses;
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simple GELF TCP server for tests. Accepts any number of connections and collects all
+ * null terminated messages.
+ */
+final class TcpServer implements Runnable {
+
+    private final ServerSocket server;
+    private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+    private final List<Socket> sockets = new ArrayList<>();
+
+    TcpServer() throws IOException {
+        this(new ServerSocket(0));
+    }
+
+    TcpServer(final ServerSocket server) {
+        this.server = server;
+        final Thread thread = new Thread(this, "tcp-server-" + server.getLocalPort());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Waits (up to 10 seconds) until the given number of messages has been received.
+     */
+    List<String> receiveMessages(final int count) {
+        final List<String> received = new ArrayList<>(count);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try {
+            while (received.size() < count) {
+                final String message =
+                    messages.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (message == null) {
+                    throw new IllegalStateException("Received only " + received.size()
+                        + " of " + count + " messages");
+                }
+                received.add(message);
+            }
+        } catch (final InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return received;
+    }
+
+    @Override
+    public void run() {
+        while (!server.isClosed()) {
+            try {
+                final Socket socket = server.accept();
+                synchronized (sockets) {
+                    sockets.add(socket);
+                }
+                final Thread reader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        read(socket);
+                    }
+                });
+                reader.setDaemon(true);
+                reader.start();
+            } catch (final IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void read(final Socket socket) {
+        try (InputStream in = new BufferedInputStream(socket.getInputStream())) {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == 0) {
+                    messages.add(new String(bos.toByteArray(), StandardCharsets.UTF_8));
+                    bos.reset();
+                } else {
+                    bos.write(b);
+                }
+            }
+        } catch (final IOException e) {
+            // closed
+        }
+    }
+
+    void close() throws IOException {
+        server.close();
+        synchronized (sockets) {
+            for (final Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class GelfAppenderMetricsTest {
+
+    private static final int THREADS = 8;
+    private static final int EVENTS_PER_THREAD = 100_000;
+
+    private final GelfAppenderMetrics metrics = new GelfAppenderMetrics();
+
+    @Test
+    public void concurrentUpdates() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < EVENTS_PER_THREAD; j++) {
+                        metrics.event();
+                        metrics.encoded(10, 5);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(THREADS * EVENTS_PER_THREAD, metrics.getEvents());
+        assertEquals(THREADS * EVENTS_PER_THREAD * 10L, metrics.getBytesBeforeCompression());
+        assertEquals(THREADS * EVENTS_PER_THREAD * 5L, metrics.getBytesAfterCompression());
+    }
+
+    @Test
+    public void disabled() {
+        metrics.setEnabled(false);
+        metrics.event();
+        metrics.sendError();
+        metrics.dropped();
+
+        assertEquals(0, metrics.getEvents());
+        assertEquals(0, metrics.getSendErrors());
+        assertEquals(0, metrics.getDrops());
+    }
+
+    @Test
+    public void registration() throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(
+            "de.siegmar.logbackgelf:type=GelfAppender,context=\"test\",name=\"GELF\"");
+
+        metrics.register("test", "GELF");
+        try {
+            metrics.connected();
+            metrics.connected();
+            metrics.retry();
+
+            assertEquals(2L, server.getAttribute(name, "Connects"));
+            assertEquals(2L, server.getAttribute(name, "Reconnects"));
+            assertEquals(1L, server.getAttribute(name, "Retries"));
+        } finally {
+            metrics.unregister();
+        }
+
+        assertFalse(server.isRegistered(name));
+    }
+
+}
@@ -20,6 +20,24 @@
 package de.siegmar.logbackgelf.pool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -42,38 +60,355 @@ public class SimpleObjectPoolTest {
         final SimpleObjectPool<MyPooledObject> pool =
             new SimpleObjectPool<>(factory, 2, 100, 100);
 
+        // A thread gets the same object again (thread affinity)
+        final MyPooledObject o1 = pool.borrowObject();
+        pool.returnObject(o1);
+
         for (int i = 0; i < 10; i++) {
+            final MyPooledObject o = pool.borrowObject();
+            assertSame(o1, o);
+            pool.returnObject(o);
+        }
+    }
+
+    @Test
+    public void steal() throws InterruptedException {
+        final SimpleObjectPool<MyPooledObject> pool =
+            new SimpleObjectPool<>(factory, 2, 100, 100);
+
+        final MyPooledObject o1 = pool.borrowObject();
+        final MyPooledObject o2 = pool.borrowObject();
+        assertNotSame(o1, o2);
+
+        pool.returnObject(o1);
+        pool.returnObject(o2);
+    }
+
+    @Test
+    public void exhausted() throws InterruptedException {
+        final SimpleObjectPool<MyPooledObject> pool =
+            new SimpleObjectPool<>(factory, 1, 100, 100);
+
+        pool.borrowObject();
+
+        try {
+            pool.borrowObject();
+            fail("Expected IllegalStateException");
+        } catch (final IllegalStateException e) {
+            assertEquals("Couldn't acquire connection from pool", e.getMessage());
+        }
+    }
+
+    @Test
+    public void exhaustedWithoutException() throws Exception {
+        final SimpleObjectPool<MyPooledObject> pool =
+            new SimpleObjectPool<>(factory, 1, 100, 100);
+
+        pool.borrowObject();
+
+        assertNull(pool.tryBorrowObject());
+        assertFalse(pool.tryExecute(new PooledObjectConsumer<MyPooledObject>() {
+            @Override
+            public void accept(final MyPooledObject pooledObject) {
+                fail("No object expected");
+            }
+        }));
+    }
+
+    @Test
+    public void handoff() throws Exception {
+        final SimpleObjectPool<MyPooledObject> pool =
+            new SimpleObjectPool<>(factory, 1, 5000, 100);
+
+        final MyPooledObject o1 = pool.borrowObject();
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<MyPooledObject> waiting = executor.submit(new Callable<MyPooledObject>() {
+                @Override
+                public MyPooledObject call() throws InterruptedException {
+                    return pool.borrowObject();
+                }
+            });
+
+            Thread.sleep(100);
+            assertFalse(waiting.isDone());
+
+            pool.returnObject(o1);
+            assertSame(o1, waiting.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void invalidate() throws InterruptedException {
+        final SimpleObjectPool<MyPooledObject> pool =
+            new SimpleObjectPool<>(factory, 2, 100, 100);
+
+        final MyPooledObject o1 = pool.borrowObject();
+        pool.invalidateObject(o1);
+        assertTrue(o1.isClosed());
+
+        // The replacement becomes the thread's preferred object
+        final MyPooledObject o2 = pool.borrowObject();
+        assertEquals(3, o2.getId());
+
+        final MyPooledObject o3 = pool.borrowObject();
+        assertNotSame(o1, o3);
+        assertFalse(o3.isClosed());
+
+        pool.returnObject(o2);
+        pool.returnObject(o3);
+    }
+
+    @Test
+    public void backgroundReplacement() throws Exception {
+        final SimpleObjectPool<MyPooledObject> pool =
+            new SimpleObjectPool<>(factory, 1, 100, 1);
+
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            pool.start(executor, executor);
+
             final MyPooledObject o1 = pool.borrowObject();
-            assertEquals(1, o1.getId());
             pool.returnObject(o1);
 
+            // Expired object is replaced without any borrower involved
+            Thread.sleep(1500);
+            assertTrue(o1.isClosed());
+
             final MyPooledObject o2 = pool.borrowObject();
             assertEquals(2, o2.getId());
+            assertTrue(o2.isOpened());
             pool.returnObject(o2);
+
+            // Invalidated object is replaced in background
+            pool.invalidateObject(pool.borrowObject());
+            final MyPooledObject o3 = pool.borrowObject();
+            assertEquals(3, o3.getId());
+            assertTrue(o3.isOpened());
+            pool.returnObject(o3);
+        } finally {
+            pool.close();
+            executor.shutdown();
         }
     }
 
     @Test
-    public void invalidate() throws InterruptedException {
+    public void ownBackgroundThreads() throws Exception {
         final SimpleObjectPool<MyPooledObject> pool =
-            new SimpleObjectPool<>(factory, 2, 100, 100);
+            new SimpleObjectPool<>(factory, 1, 100, -1);
+
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            pool.start(scheduler);
+
+            final MyPooledObject o1 = pool.borrowObject();
+            for (int i = 0; i < 100 && !o1.isOpened(); i++) {
+                Thread.sleep(10);
+            }
+            assertTrue(o1.isOpened());
+            pool.returnObject(o1);
+        } finally {
+            pool.close();
+            scheduler.shutdown();
+        }
+    }
 
+    @Test
+    public void rejectedBackgroundTasks() throws Exception {
+        final SimpleObjectPool<MyPooledObject> pool =
+            new SimpleObjectPool<>(factory, 1, 2, 100, -1, 0, 0);
+        pool.setGrowWaitTime(10);
+
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            pool.start(scheduler, new Executor() {
+                @Override
+                public void execute(final Runnable command) {
+                    throw new RejectedExecutionException();
+                }
+            });
+
+            // The replacement of an invalidated object is opened on first use
+            pool.invalidateObject(pool.borrowObject());
+            assertEquals(1, pool.getStatistics().getSize());
+            final MyPooledObject o2 = pool.borrowObject();
+            assertEquals(2, o2.getId());
+
+            // So is a new object if the pool grows
+            final MyPooledObject o3 = pool.borrowObject();
+            assertEquals(3, o3.getId());
+            assertEquals(2, pool.getStatistics().getSize());
+
+            pool.returnObject(o2);
+            pool.returnObject(o3);
+        } finally {
+            pool.close();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void lifeTimeJitter() {
+        final List<MyPooledObject> objects = new ArrayList<>();
+        new SimpleObjectPool<>(new PooledObjectFactory<MyPooledObject>() {
+            @Override
+            public MyPooledObject newInstance() {
+                final MyPooledObject o = new MyPooledObject(objects.size() + 1);
+                objects.add(o);
+                return o;
+            }
+        }, 100, 100, 60, 60, 0);
+
+        // Life times are spread across the whole interval instead of expiring all at once
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (final MyPooledObject o : objects) {
+            min = Math.min(min, o.getMaxLifeTime());
+            max = Math.max(max, o.getMaxLifeTime());
+        }
+
+        assertTrue(min >= 0);
+        assertTrue(max <= 60_000);
+        assertTrue("Life times not spread: " + min + ".." + max, max - min > 30_000);
+    }
+
+    @Test
+    public void rotationPause() throws InterruptedException {
+        final SimpleObjectPool<MyPooledObject> pool =
+            new SimpleObjectPool<>(factory, 3, 100, 1, 0, 60_000);
+
+        Thread.sleep(1100);
+
+        // All three objects are expired, but only one of them may be replaced per pause
         final MyPooledObject o1 = pool.borrowObject();
-        assertEquals(1, o1.getId());
-        pool.invalidateObject(o1);
+        final MyPooledObject o2 = pool.borrowObject();
+        final MyPooledObject o3 = pool.borrowObject();
+
+        assertEquals(4, o1.getId());
+        assertTrue(o2.getId() <= 3);
+        assertTrue(o3.getId() <= 3);
+    }
 
+    @Test
+    public void grow() throws InterruptedException {
+        final SimpleObjectPool<MyPooledObject> pool =
+            new SimpleObjectPool<>(factory, 1, 2, 1000, 100, 0, 0);
+        pool.setGrowWaitTime(50);
+
+        final MyPooledObject o1 = pool.borrowObject();
+
+        // No object returned within the grow wait time - pool grows
+        final long start = System.nanoTime();
         final MyPooledObject o2 = pool.borrowObject();
+        final long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
         assertEquals(2, o2.getId());
+        assertTrue("Waited " + waited + " ms", waited >= 40 && waited < 1000);
+
+        PoolStatistics statistics = pool.getStatistics();
+        assertEquals(2, statistics.getSize());
+        assertEquals(0, statistics.getIdle());
+        assertEquals(1, statistics.getWaitCount());
+        assertTrue(statistics.getMaxWaitTime() >= 40);
+
+        // Maximum size reached
+        try {
+            pool.borrowObject();
+            fail("Expected IllegalStateException");
+        } catch (final IllegalStateException e) {
+            assertEquals("Couldn't acquire connection from pool", e.getMessage());
+        }
+
+        pool.returnObject(o1);
         pool.returnObject(o2);
 
-        final MyPooledObject o3 = pool.borrowObject();
-        assertEquals(3, o3.getId());
-        pool.returnObject(o3);
+        statistics = pool.getStatistics();
+        assertEquals(2, statistics.getIdle());
+        assertEquals(2, statistics.getWaitCount());
+    }
+
+    @Test
+    public void shrink() throws Exception {
+        final SimpleObjectPool<MyPooledObject> pool =
+            new SimpleObjectPool<>(factory, 1, 3, 1000, -1, 0, 0);
+        pool.setGrowWaitTime(10);
+        pool.setIdleTimeout(200);
+
+        final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+        try {
+            pool.start(executor, executor);
+
+            final MyPooledObject o1 = pool.borrowObject();
+            final MyPooledObject o2 = pool.borrowObject();
+            final MyPooledObject o3 = pool.borrowObject();
+            assertTrue(o2.isOpened());
+            assertTrue(o3.isOpened());
+            assertEquals(3, pool.getStatistics().getSize());
+
+            pool.returnObject(o1);
+            pool.returnObject(o2);
+            pool.returnObject(o3);
+
+            // Idle objects are removed down to the minimum size
+            Thread.sleep(1000);
+            assertEquals(1, pool.getStatistics().getSize());
+            assertEquals(2, (o1.isClosed() ? 1 : 0) + (o2.isClosed() ? 1 : 0)
+                + (o3.isClosed() ? 1 : 0));
+
+            // ... and grows again if required
+            final MyPooledObject o4 = pool.borrowObject();
+            final MyPooledObject o5 = pool.borrowObject();
+            assertFalse(o4.isClosed());
+            assertEquals(4, o5.getId());
+            assertEquals(2, pool.getStatistics().getSize());
+        } finally {
+            pool.close();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        final SimpleObjectPool<MyPooledObject> pool =
+            new SimpleObjectPool<>(factory, 2, -1, 100);
+
+        final int threads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        for (int i = 0; i < 10_000; i++) {
+                            final MyPooledObject o = pool.borrowObject();
+                            if (o.inUse.getAndIncrement() != 0) {
+                                throw new IllegalStateException("Object used concurrently");
+                            }
+                            o.inUse.decrementAndGet();
+                            pool.returnObject(o);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (final Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
     }
 
     private static final class MyPooledObject extends AbstractPooledObject {
 
         private final int id;
+        private final AtomicInteger inUse = new AtomicInteger();
+        private volatile boolean opened;
+        private volatile boolean closed;
 
         MyPooledObject(final int id) {
             this.id = id;
@@ -83,6 +418,24 @@ public class SimpleObjectPoolTest {
             return id;
         }
 
+        boolean isOpened() {
+            return opened;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        protected void open() {
+            opened = true;
+        }
+
+        @Override
+        protected void close() {
+            closed = true;
+        }
+
     }
 
 }
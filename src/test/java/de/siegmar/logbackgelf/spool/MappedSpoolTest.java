@@ -0,0 +1,181 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf.spool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedSpoolTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void appendAndDrain() throws Exception {
+        final MappedSpool spool = new MappedSpool(tmp.getRoot().toPath(), 64, 1024);
+        spool.open();
+        assertTrue(spool.isEmpty());
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(spool.append(frame("msg" + i)));
+        }
+        assertFalse(spool.isEmpty());
+
+        assertEquals("msg0\0msg1\0msg2\0msg3\0msg4\0msg5\0msg6\0msg7\0msg8\0msg9\0",
+            drainAll(spool));
+        assertTrue(spool.isEmpty());
+
+        spool.close();
+    }
+
+    @Test
+    public void tooLarge() throws IOException {
+        final MappedSpool spool = new MappedSpool(tmp.getRoot().toPath(), 32, 1024);
+        spool.open();
+
+        assertFalse(spool.append(new byte[17]));
+        assertTrue(spool.append(new byte[16]));
+
+        spool.close();
+    }
+
+    @Test
+    public void failedDrainIsRetained() throws Exception {
+        final MappedSpool spool = new MappedSpool(tmp.getRoot().toPath(), 64, 1024);
+        spool.open();
+        spool.append(frame("foo"));
+
+        try {
+            spool.drain(new SpoolConsumer() {
+                @Override
+                public void accept(final FileChannel channel, final long position,
+                                   final long count) throws IOException {
+                    throw new IOException("Connection refused");
+                }
+            });
+        } catch (final IOException e) {
+            assertEquals("Connection refused", e.getMessage());
+        }
+
+        assertFalse(spool.isEmpty());
+        assertEquals("foo\0", drainAll(spool));
+
+        spool.close();
+    }
+
+    @Test
+    public void evictOldestSegment() throws Exception {
+        // Each segment holds 4 frames (16 bytes header + 4 * 11 bytes)
+        final MappedSpool spool = new MappedSpool(tmp.getRoot().toPath(), 64, 128);
+        spool.open();
+
+        for (int i = 0; i < 12; i++) {
+            spool.append(frame(String.format("message%03d", i)));
+        }
+
+        assertEquals(1, spool.getEvictedSegments());
+        assertEquals("message004\0message005\0message006\0message007\0"
+            + "message008\0message009\0message010\0message011\0", drainAll(spool));
+
+        spool.close();
+    }
+
+    @Test
+    public void recovery() throws Exception {
+        // Each segment holds 3 frames (16 bytes header + 3 * 5 bytes)
+        final MappedSpool spool = new MappedSpool(tmp.getRoot().toPath(), 32, 1024);
+        spool.open();
+        for (int i = 0; i < 6; i++) {
+            spool.append(frame("msg" + i));
+        }
+
+        // consume the first segment
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        spool.drain(writeTo(out));
+        assertEquals("msg0\0msg1\0msg2\0",
+            new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        // Don't close the spool - simulate a crash
+        final MappedSpool recovered = new MappedSpool(tmp.getRoot().toPath(), 32, 1024);
+        recovered.open();
+
+        assertFalse(recovered.isEmpty());
+        assertEquals("msg3\0msg4\0msg5\0", drainAll(recovered));
+
+        recovered.append(frame("msg6"));
+        assertEquals("msg6\0", drainAll(recovered));
+
+        recovered.close();
+    }
+
+    @Test
+    public void corruptSegmentIsDiscarded() throws Exception {
+        assertTrue(new File(tmp.getRoot(), "0000000000000000000.spool").createNewFile());
+
+        final MappedSpool spool = new MappedSpool(tmp.getRoot().toPath(), 64, 1024);
+        spool.open();
+
+        assertTrue(spool.isEmpty());
+        assertEquals(0, tmp.getRoot().list().length);
+
+        spool.append(frame("foo"));
+        assertEquals("foo\0", drainAll(spool));
+
+        spool.close();
+    }
+
+    private static byte[] frame(final String message) {
+        return (message + '\0').getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String drainAll(final MappedSpool spool) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final SpoolConsumer consumer = writeTo(out);
+
+        while (!spool.isEmpty()) {
+            spool.drain(consumer);
+        }
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static SpoolConsumer writeTo(final ByteArrayOutputStream out) {
+        return new SpoolConsumer() {
+            @Override
+            public void accept(final FileChannel channel, final long position,
+                               final long count) throws IOException {
+                channel.transferTo(position, count, Channels.newChannel(out));
+            }
+        };
+    }
+
+}
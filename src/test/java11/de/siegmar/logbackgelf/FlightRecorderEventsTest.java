@@ -0,0 +1,127 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderEventsTest {
+
+    private static final String LOGGER_NAME = FlightRecorderEventsTest.class.getCanonicalName();
+
+    private TcpServer server;
+
+    @Before
+    public void before() throws IOException {
+        server = new TcpServer();
+    }
+
+    @After
+    public void after() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void tcpEvents() throws IOException {
+        final Map<String, RecordedEvent> events = new HashMap<>();
+        for (final RecordedEvent event : record()) {
+            events.put(event.getEventType().getName(), event);
+        }
+
+        final RecordedEvent layout = events.get("de.siegmar.logbackgelf.Layout");
+        assertTrue(layout.getInt("messageSize") > 0);
+
+        final RecordedEvent connect = events.get("de.siegmar.logbackgelf.Connect");
+        assertTrue(connect.getBoolean("success"));
+        assertEquals(server.getPort(), connect.getInt("port"));
+
+        final RecordedEvent write = events.get("de.siegmar.logbackgelf.TcpWrite");
+        assertTrue(write.getBoolean("success"));
+        assertEquals(layout.getInt("messageSize") + 1, write.getLong("bytes"));
+    }
+
+    private List<RecordedEvent> record() throws IOException {
+        final Path file = Files.createTempFile("logback-gelf", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (final String event : new String[] {"Layout", "Connect", "TcpWrite"}) {
+                recording.enable("de.siegmar.logbackgelf." + event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+
+            logMessage();
+
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private void logMessage() throws IOException {
+        final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        final GelfLayout gelfLayout = new GelfLayout();
+        gelfLayout.setContext(lc);
+        gelfLayout.setOriginHost("localhost");
+        gelfLayout.start();
+
+        final GelfTcpAppender appender = new GelfTcpAppender();
+        appender.setContext(lc);
+        appender.setLayout(gelfLayout);
+        appender.setGraylogHost("localhost");
+        appender.setGraylogPort(server.getPort());
+        appender.setPoolSize(1);
+        appender.start();
+        assertTrue(appender.isStarted());
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME);
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+
+        try {
+            logger.info("Test message");
+            server.receiveMessages(1);
+        } finally {
+            appender.stop();
+            logger.detachAppender(appender);
+        }
+    }
+
+}
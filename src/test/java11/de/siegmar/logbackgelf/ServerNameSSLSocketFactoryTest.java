@@ -0,0 +1,128 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIMatcher;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.StandardConstants;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServerNameSSLSocketFactoryTest {
+
+    private static final String SERVER_NAME = "graylog.example.com";
+
+    private final Set<String> serverNames = Collections.synchronizedSet(new HashSet<String>());
+
+    private final InetAddress address = InetAddress.getLoopbackAddress();
+
+    private final SSLContext sslContext = LocalhostTls.sslContext();
+
+    // TLS 1.2 - session ids of TLS 1.3 don't reveal resumption
+    private final SSLSocketFactory delegate = new ConfiguredSSLSocketFactory(
+        sslContext.getSocketFactory(), new String[] {"TLSv1.2"}, null);
+
+    private TcpServer server;
+
+    @Before
+    public void before() throws IOException {
+        final SSLServerSocket serverSocket = (SSLServerSocket) sslContext
+            .getServerSocketFactory().createServerSocket(0, 0, address);
+
+        // Records the server names (SNI) sent by the clients
+        final SSLParameters parameters = serverSocket.getSSLParameters();
+        parameters.setSNIMatchers(Collections.<SNIMatcher>singletonList(
+            new SNIMatcher(StandardConstants.SNI_HOST_NAME) {
+                @Override
+                public boolean matches(final SNIServerName serverName) {
+                    serverNames.add(((SNIHostName) serverName).getAsciiName());
+                    return true;
+                }
+            }));
+        serverSocket.setSSLParameters(parameters);
+
+        server = new TcpServer(serverSocket);
+    }
+
+    @After
+    public void after() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void serverName() throws IOException {
+        // Layered over a socket connected to the address - as done by the JDK HTTPS client
+        final SSLSocketFactory socketFactory =
+            new ServerNameSSLSocketFactory(delegate, SERVER_NAME);
+        final SSLSession firstSession = handshake(socketFactory);
+        assertEquals(SERVER_NAME, firstSession.getPeerHost());
+        assertEquals(Collections.singleton(SERVER_NAME), serverNames);
+
+        // Session cached by hostname
+        assertArrayEquals(firstSession.getId(), handshake(socketFactory).getId());
+
+        // Without server name - no SNI and the session is cached by the address
+        final SSLSession addressSession = handshake(delegate);
+        assertEquals(address.getHostAddress(), addressSession.getPeerHost());
+        assertFalse(Arrays.equals(firstSession.getId(), addressSession.getId()));
+        assertEquals(1, serverNames.size());
+    }
+
+    @Test(expected = SSLHandshakeException.class)
+    public void certificateMismatch() throws IOException {
+        // The certificate is verified against the server name - not the address
+        handshake(new ServerNameSSLSocketFactory(delegate, "other.example.com"));
+    }
+
+    private SSLSession handshake(final SSLSocketFactory socketFactory) throws IOException {
+        final Socket plainSocket = new Socket();
+        plainSocket.connect(new InetSocketAddress(address, server.getPort()));
+
+        try (SSLSocket socket = (SSLSocket) socketFactory.createSocket(plainSocket,
+            address.getHostAddress(), server.getPort(), true)) {
+            socket.startHandshake();
+            return socket.getSession();
+        }
+    }
+
+}
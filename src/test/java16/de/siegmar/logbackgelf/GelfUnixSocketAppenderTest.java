@@ -0,0 +1,172 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.status.Status;
+
+public class GelfUnixSocketAppenderTest {
+
+    private static final String LOGGER_NAME =
+        GelfUnixSocketAppenderTest.class.getCanonicalName();
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void simple() throws IOException {
+        final Path socketFile = tmp.getRoot().toPath().resolve("gelf.sock");
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketFile));
+
+            final GelfUnixSocketAppender appender = buildAppender(socketFile.toString());
+            assertTrue(appender.isStarted());
+            final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME);
+            logger.addAppender(appender);
+            logger.setAdditive(false);
+
+            try (SocketChannel client = server.accept()) {
+                logger.error("Test message 1");
+                logger.error("Test message 2");
+
+                final InputStream in = Channels.newInputStream(client);
+                assertEquals("Test message 1", readMessage(in).get("short_message").textValue());
+                assertEquals("Test message 2", readMessage(in).get("short_message").textValue());
+            } finally {
+                appender.stop();
+                logger.detachAppender(appender);
+            }
+        }
+    }
+
+    @Test
+    public void connectAttemptDelay() throws IOException {
+        final Path socketFile = tmp.getRoot().toPath().resolve("gelf.sock");
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketFile));
+
+            // No hostname to resolve - no staggered connection attempts
+            final AbstractTcpConnection connection =
+                UnixSocketConnection.factory(socketFile.toString(), 1000).newInstance();
+            connection.setConnectAttemptDelay(250);
+
+            // Connected via the backlog of the server
+            connection.write("{\"short_message\":\"Test\"}\0".getBytes(StandardCharsets.UTF_8));
+
+            try (SocketChannel client = server.accept()) {
+                final InputStream in = Channels.newInputStream(client);
+                assertEquals("Test", readMessage(in).get("short_message").textValue());
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    public void sendError() {
+        final String socketPath = tmp.getRoot().toPath().resolve("missing.sock").toString();
+        final GelfUnixSocketAppender appender = buildAppender(socketPath);
+        appender.setMaxRetries(0);
+        assertTrue(appender.isStarted());
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME);
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+        try {
+            logger.error("Test message");
+        } finally {
+            appender.stop();
+            logger.detachAppender(appender);
+        }
+
+        assertTrue(hasStatus(appender, "Error sending message via unix:" + socketPath));
+    }
+
+    @Test
+    public void noSocketPath() {
+        final GelfUnixSocketAppender appender = buildAppender(null);
+        assertFalse(appender.isStarted());
+    }
+
+    private static GelfUnixSocketAppender buildAppender(final String socketPath) {
+        final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        final GelfLayout gelfLayout = new GelfLayout();
+        gelfLayout.setContext(lc);
+        gelfLayout.setOriginHost("localhost");
+        gelfLayout.start();
+
+        final GelfUnixSocketAppender appender = new GelfUnixSocketAppender();
+        appender.setContext(lc);
+        appender.setLayout(gelfLayout);
+        appender.setSocketPath(socketPath);
+        appender.setPoolSize(1);
+        appender.start();
+        return appender;
+    }
+
+    private static boolean hasStatus(final GelfUnixSocketAppender appender, final String text) {
+        for (final Status status
+            : appender.getContext().getStatusManager().getCopyOfStatusList()) {
+            if (status.getOrigin() == appender && status.getMessage().contains(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static JsonNode readMessage(final InputStream in) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for (int b = in.read(); b != 0; b = in.read()) {
+            if (b == -1) {
+                throw new IOException("Connection closed");
+            }
+            bos.write(b);
+        }
+        return new ObjectMapper().readTree(new String(bos.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+}
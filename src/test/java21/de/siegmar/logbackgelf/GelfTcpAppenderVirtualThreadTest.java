@@ -0,0 +1,97 @@
+/*
+ * Logback GELF - zero dependencies Logback GELF appender library.
+ * Copyright (C) 2018 Oliver Siegmar
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package de.siegmar.logbackgelf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+
+public class GelfTcpAppenderVirtualThreadTest {
+
+    private static final String LOGGER_NAME =
+        GelfTcpAppenderVirtualThreadTest.class.getCanonicalName();
+
+    private TcpServer server;
+
+    @Before
+    public void before() throws IOException {
+        server = new TcpServer();
+    }
+
+    @After
+    public void after() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void virtualThreadSender() throws IOException {
+        final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        final GelfLayout gelfLayout = new GelfLayout();
+        gelfLayout.setContext(lc);
+        gelfLayout.setOriginHost("localhost");
+        gelfLayout.start();
+
+        final GelfTcpAppender appender = new GelfTcpAppender();
+        appender.setContext(lc);
+        appender.setLayout(gelfLayout);
+        appender.setGraylogHost("localhost");
+        appender.setGraylogPort(server.getPort());
+        appender.setVirtualThreadSender(true);
+        appender.start();
+        assertTrue(appender.isStarted());
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(LOGGER_NAME);
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+
+        try {
+            for (int i = 0; i < 100; i++) {
+                logger.info("Test message " + i);
+            }
+
+            // Sent concurrently - in any order
+            final Set<String> messages = new HashSet<>();
+            for (final String message : server.receiveMessages(100)) {
+                messages.add(new ObjectMapper().readTree(message).get("short_message").textValue());
+            }
+            assertEquals(100, messages.size());
+        } finally {
+            appender.stop();
+            logger.detachAppender(appender);
+        }
+
+        assertEquals(Long.valueOf(100), appender.getTransportStatistics().get("tcp"));
+    }
+
+}